@@ -0,0 +1,37 @@
+package com.github.rbuck.dash.common;
+
+import com.github.rbuck.dash.services.cloud.CloudService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures statement lookups in a dialect, for keys the dialect declares and
+ * for keys it falls back to the system properties for.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DialectBenchmark {
+
+    private Dialect dialect;
+
+    @Setup
+    public void setup() throws IOException {
+        dialect = new Dialect(CloudService.class, "nuodb");
+    }
+
+    @Benchmark
+    public String declared() {
+        return dialect.getProperty("GET_ACCOUNT_ID");
+    }
+
+    @Benchmark
+    public String undeclared() {
+        return dialect.getProperty("NO_SUCH_STATEMENT");
+    }
+}
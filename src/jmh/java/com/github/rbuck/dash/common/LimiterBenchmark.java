@@ -0,0 +1,57 @@
+package com.github.rbuck.dash.common;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead each limiter adds to an operation when contended by
+ * several workers. The limit is set far above what can be reached so that
+ * the cost of admission is measured, rather than the wait for a token.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class LimiterBenchmark {
+
+    private static final long UNREACHABLE_RATE = 1_000_000_000L;
+
+    @Param({"constant", "poisson", "striped"})
+    public String limiter;
+
+    private Limiter instance;
+
+    @Setup
+    public void setup() {
+        switch (limiter) {
+            case "constant":
+                System.setProperty("dash.driver.rates.limit", Long.toString(UNREACHABLE_RATE));
+                instance = new ConstantLimiter();
+                break;
+            case "poisson":
+                instance = new PoissonLimiter(UNREACHABLE_RATE);
+                break;
+            case "striped":
+                instance = new StripedLimiter(UNREACHABLE_RATE, 4, 1000);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown limiter: " + limiter);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (instance instanceof AutoCloseable) {
+            ((AutoCloseable) instance).close();
+        }
+    }
+
+    @Benchmark
+    public void consume() {
+        instance.consume(1);
+    }
+}
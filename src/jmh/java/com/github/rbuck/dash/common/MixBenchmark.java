@@ -0,0 +1,45 @@
+package com.github.rbuck.dash.common;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of choosing the next workload type, both through a
+ * sampler owned by the caller and through the mix's thread-local sampler.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MixBenchmark {
+
+    @Param({"random", "round-robin"})
+    public String sampler;
+
+    private Mix mix;
+    private Mix.Sampler owned;
+
+    @Setup
+    public void setup() {
+        Properties properties = new Properties();
+        properties.setProperty("dash.workload.mix", "[50,20,15,10,5]");
+        properties.setProperty("dash.workload.tag", "[OLTP_R1,OLTP_R2,OLTP_C1,OLTP_U1,OLTP_D1]");
+        properties.setProperty("dash.workload.sampler", sampler);
+        mix = new Mix(properties);
+        owned = mix.newSampler();
+    }
+
+    @Benchmark
+    public Mix.Type sampler() {
+        return owned.next();
+    }
+
+    @Benchmark
+    public Mix.Type threadLocal() {
+        return mix.next();
+    }
+}
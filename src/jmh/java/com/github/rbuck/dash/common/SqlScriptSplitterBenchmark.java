@@ -0,0 +1,44 @@
+package com.github.rbuck.dash.common;
+
+import com.github.rbuck.dash.services.cloud.CloudService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures splitting the install scripts into statements; the scripts are
+ * repeated to show how the cost grows with the length of the script.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SqlScriptSplitterBenchmark {
+
+    @Param({"nuodb", "mysql"})
+    public String dialect;
+
+    @Param({"1", "16"})
+    public int copies;
+
+    private String script;
+
+    @Setup
+    public void setup() throws IOException {
+        String install = Resources.loadResource(CloudService.class, dialect + "-dialect-install.sql", new StringBuilder()).toString();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < copies; i++) {
+            builder.append(install).append('\n');
+        }
+        script = builder.toString();
+    }
+
+    @Benchmark
+    public List<String> splitStatements() {
+        return new SqlScriptSplitter().splitStatements(script);
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.rbuck.dash.common;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of generating synthetic column values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SyntheticDataBenchmark {
+
+    @Param({"20", "256"})
+    public int length;
+
+    private SyntheticData.StringPool pool;
+
+    @Setup
+    public void setup() {
+        pool = SyntheticData.newStringPool(1024, length);
+    }
+
+    @Benchmark
+    public String randString() {
+        return SyntheticData.genRandString(length);
+    }
+
+    @Benchmark
+    public String randUuid() {
+        return SyntheticData.genRandUuid();
+    }
+
+    @Benchmark
+    public String pooledString() {
+        return pool.next();
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.rbuck.dash.common;
+
+import com.codahale.metrics.Timer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures recording into a timer shared by several workers, backed by an
+ * {@link HdrReservoir} as the driver's timers are, and by the default
+ * reservoir for comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class TimerBenchmark {
+
+    @Param({"hdr", "default"})
+    public String reservoir;
+
+    private Timer timer;
+
+    @Setup
+    public void setup() {
+        timer = "hdr".equals(reservoir) ? new Timer(new HdrReservoir()) : new Timer();
+    }
+
+    @Benchmark
+    public void update() {
+        timer.update(ThreadLocalRandom.current().nextLong(100_000, 10_000_000), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.rbuck.dash.services.generic;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures evaluating the parameters of a statement, as done each time a
+ * generic statement is bound, for literal and generated parameters.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BindingPlanBenchmark {
+
+    @Param({
+            "{{42}}{{'abc'}}{{3.14}}",
+            "{{zipfian(1000000)}}{{hotspot(1000000)}}{{sqldate.date('2000/01/01','2020/12/31')}}"
+    })
+    public String template;
+
+    private BindingPlan plan;
+
+    @Setup
+    public void setup() {
+        plan = BindingPlan.compile(template);
+    }
+
+    @Benchmark
+    public void evaluate(Blackhole blackhole) {
+        for (int i = 0; i < plan.size(); i++) {
+            blackhole.consume(plan.value(i));
+        }
+    }
+
+    @Benchmark
+    public BindingPlan compile() {
+        return BindingPlan.compile(template);
+    }
+}
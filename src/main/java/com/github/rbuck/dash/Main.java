@@ -1,6 +1,11 @@
 package com.github.rbuck.dash;
 
+import com.github.rbuck.dash.cluster.Agent;
+import com.github.rbuck.dash.cluster.Coordinator;
+import com.github.rbuck.dash.common.CapacitySearch;
+import com.github.rbuck.dash.common.ConstantLimiter;
 import com.github.rbuck.dash.common.Exceptions;
+import com.github.rbuck.dash.common.PhaseSchedule;
 import com.github.rbuck.dash.common.YamlEnv;
 import com.github.rbuck.dash.services.Container;
 import net.sourceforge.argparse4j.ArgumentParsers;
@@ -9,18 +14,20 @@ import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
+import org.HdrHistogram.Histogram;
 import org.slf4j.bridge.SLF4JBridgeHandler;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import static com.github.rbuck.dash.common.PropertiesHelper.getIntegerProperty;
 import static java.lang.System.getProperties;
 import static java.lang.System.getProperty;
 
@@ -46,8 +53,22 @@ public class Main {
     }
 
     public static void main(String[] args) {
-        loadEnvironment(args);
+        Namespace namespace = parseArguments(args);
+        switch (namespace.getString("role")) {
+            case "coordinator":
+                runCoordinator(namespace);
+                break;
+            case "agent":
+                runAgent(namespace);
+                break;
+            default:
+                loadEnvironment(namespace);
+                runStandalone();
+                break;
+        }
+    }
 
+    private static void runStandalone() {
         final CountDownLatch latch = new CountDownLatch(1);
         final Container container = new Container();
         container.addStatusChangeListener(changeEvent -> {
@@ -70,10 +91,30 @@ public class Main {
 
             // the latch should be waited upon in only two cases:
             // control-c was triggered, or the container itself
-            // shutdown, b/c perhaps the test completed.
+            // shutdown, b/c perhaps the test completed. otherwise
+            // the run moves through each phase of its schedule; the
+            // services began the first phase upon starting. when
+            // searching capacity, the search is the steady state.
             try {
-                int testDuration = getIntegerProperty(getProperties(), "dash.driver.duration", 30);
-                if (!latch.await(testDuration, TimeUnit.SECONDS)) {
+                PhaseSchedule schedule = new PhaseSchedule(getProperties());
+                CapacitySearch search = new CapacitySearch(getProperties(), ConstantLimiter.getLimitRate());
+                List<PhaseSchedule.Phase> phases = schedule.getPhases();
+                if (search.isEnabled() && !phases.contains(PhaseSchedule.Phase.STEADY)) {
+                    phases.add(phases.size() - (phases.contains(PhaseSchedule.Phase.COOLDOWN) ? 1 : 0),
+                            PhaseSchedule.Phase.STEADY);
+                }
+                boolean stopped = false;
+                for (int i = 0; i < phases.size() && !stopped; i++) {
+                    if (i > 0) {
+                        container.enterPhase(phases.get(i));
+                    }
+                    if (search.isEnabled() && phases.get(i) == PhaseSchedule.Phase.STEADY) {
+                        stopped = doSearch(latch, container, search);
+                    } else {
+                        stopped = latch.await(schedule.getDuration(phases.get(i)), TimeUnit.SECONDS);
+                    }
+                }
+                if (!stopped) {
                     doStop(latch, container);
                 }
             } catch (InterruptedException e) {
@@ -84,6 +125,108 @@ public class Main {
         } catch (Exception | Error e) {
             panic(Exceptions.toStringAllCauses(e), e);
         } finally {
+            removeShutdownHook(shutdownThread);
+        }
+    }
+
+    /**
+     * Runs the trials of a capacity search, then reports the highest
+     * sustainable throughput and the knee of the latency curve. Further
+     * phases run at the highest sustainable rate found.
+     *
+     * @return true if the container stopped during the search
+     */
+    private static boolean doSearch(CountDownLatch latch, Container container, CapacitySearch search)
+            throws InterruptedException {
+        final double limit = ConstantLimiter.getLimitRate();
+        while (search.hasNext()) {
+            container.setRateScale(search.next() / limit);
+            if (latch.await(search.getSettleDuration(), TimeUnit.SECONDS)) {
+                return true;
+            }
+            container.endWindow();
+            long begin = System.nanoTime();
+            if (latch.await(search.getTrialDuration(), TimeUnit.SECONDS)) {
+                return true;
+            }
+            Map<String, Histogram> latencies = container.endWindow();
+            CapacitySearch.Trial trial = search.record((System.nanoTime() - begin) / 1e9, latencies);
+            System.out.println("Capacity search trial: " + trial);
+        }
+
+        CapacitySearch.Trial sustainable = search.getSustainable();
+        CapacitySearch.Trial knee = search.getKnee();
+        System.out.println(sustainable != null ?
+                String.format("Highest sustainable throughput: %.0f ops/sec (%s)", sustainable.getThroughput(), sustainable) :
+                "Highest sustainable throughput: none, no trial met the SLO");
+        System.out.println(knee != null ?
+                String.format("Knee: %.0f ops/sec (%s)", knee.getThroughput(), knee) :
+                "Knee: not found");
+        try {
+            search.writeReport(new File(getProperty("dash.log.dir", "."), "capacity.csv"));
+        } catch (IOException e) {
+            panic("Failed to write the capacity search report.", e);
+        }
+        if (sustainable != null) {
+            container.setRateScale(sustainable.getTarget() / limit);
+        }
+        return false;
+    }
+
+    /**
+     * Runs the test spec across agents, see {@link Coordinator}.
+     */
+    private static void runCoordinator(Namespace namespace) {
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread shutdownThread = null;
+        try {
+            final Coordinator coordinator = new Coordinator(loadEnvironment(namespace),
+                    namespace.getInt("agents"), namespace.getInt("port"));
+            shutdownThread = new Thread(() -> {
+                // if a control-c occurs, stop the run but still collect results.
+                coordinator.stop();
+                try {
+                    done.await(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            });
+            Runtime.getRuntime().addShutdownHook(shutdownThread);
+            coordinator.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception | Error e) {
+            panic(Exceptions.toStringAllCauses(e), e);
+        } finally {
+            done.countDown();
+            removeShutdownHook(shutdownThread);
+        }
+    }
+
+    /**
+     * Runs a share of a test spec for a coordinator, see {@link Agent}.
+     */
+    private static void runAgent(Namespace namespace) {
+        final String address = namespace.getString("coordinator");
+        final int separator = address.lastIndexOf(':');
+        final Agent agent = separator < 0 ? new Agent(address, namespace.getInt("port")) :
+                new Agent(address.substring(0, separator), Integer.parseInt(address.substring(separator + 1)));
+        // if a control-c occurs, properly halt the container.
+        Thread shutdownThread = new Thread(agent::stop);
+        Runtime.getRuntime().addShutdownHook(shutdownThread);
+        try {
+            agent.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception | Error e) {
+            panic(Exceptions.toStringAllCauses(e), e);
+        } finally {
+            removeShutdownHook(shutdownThread);
+        }
+    }
+
+    private static void removeShutdownHook(Thread shutdownThread) {
+        if (shutdownThread != null) {
             try {
                 Runtime.getRuntime().removeShutdownHook(shutdownThread);
             } catch (IllegalStateException e) {
@@ -92,7 +235,7 @@ public class Main {
         }
     }
 
-    private static void loadEnvironment(String[] args) {
+    private static Namespace parseArguments(String[] args) {
         final String defaultConfDir = getProperty("dash.application.conf.dir");
         final String defaultConfFile = (defaultConfDir != null ? defaultConfDir + File.separatorChar : "") + "conf.yml";
 
@@ -112,8 +255,28 @@ public class Main {
                 .type(File.class);
 
         parser.addArgument("-t", "--test")
-                .help("the name of the test to run")
-                .required(true)
+                .help("the name of the test to run; required unless running as an agent")
+                .required(false)
+                .type(String.class);
+
+        parser.addArgument("-r", "--role")
+                .help("run the test standalone, coordinate it across agents, or run as an agent (default: standalone)")
+                .choices("standalone", "coordinator", "agent")
+                .setDefault("standalone")
+                .type(String.class);
+
+        parser.addArgument("-a", "--agents")
+                .help("the count of agents a coordinator waits for (default: 1)")
+                .setDefault(1)
+                .type(Integer.class);
+
+        parser.addArgument("-p", "--port")
+                .help("the port a coordinator listens on (default: 7070)")
+                .setDefault(7070)
+                .type(Integer.class);
+
+        parser.addArgument("--coordinator")
+                .help("the host[:port] of the coordinator an agent connects to")
                 .type(String.class);
 
         parser.addArgument("-v", "--version")
@@ -121,8 +284,34 @@ public class Main {
                 .action(Arguments.version());
 
         try {
-            YamlEnv yamlEnv = new YamlEnv();
             Namespace namespace = parser.parseArgs(args);
+            boolean agent = "agent".equals(namespace.getString("role"));
+            if (!agent && namespace.getString("test") == null) {
+                throw new ArgumentParserException("argument -t/--test is required", parser);
+            }
+            if (agent && namespace.getString("coordinator") == null) {
+                throw new ArgumentParserException("argument --coordinator is required for agents", parser);
+            }
+            return namespace;
+        } catch (HelpScreenException e) {
+            System.exit(0);
+        } catch (ArgumentParserException e) {
+            parser.handleError(e);
+            System.exit(0);
+        }
+        return null; // not reached
+    }
+
+    /**
+     * Loads the test spec named on the command line into the system
+     * properties.
+     *
+     * @return the test spec properties
+     */
+    private static Properties loadEnvironment(Namespace namespace) {
+        Properties spec = new Properties();
+        try {
+            YamlEnv yamlEnv = new YamlEnv();
 
             @SuppressWarnings("unchecked")
             HashMap<String, Object> env =
@@ -140,16 +329,13 @@ public class Main {
             for (Map.Entry<String, Object> entry : testSpec.entrySet()) {
                 if (entry.getValue() != null) {
                     System.setProperty(entry.getKey(), entry.getValue().toString());
+                    spec.setProperty(entry.getKey(), entry.getValue().toString());
                 }
             }
 
-        } catch (HelpScreenException e) {
-            System.exit(0);
-        } catch (ArgumentParserException e) {
-            parser.handleError(e);
-            System.exit(0);
         } catch (IOException e) {
             // ignore
         }
+        return spec;
     }
 }
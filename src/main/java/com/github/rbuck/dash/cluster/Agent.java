@@ -0,0 +1,106 @@
+package com.github.rbuck.dash.cluster;
+
+import com.github.rbuck.dash.common.Exceptions;
+import com.github.rbuck.dash.common.PhaseSchedule;
+import com.github.rbuck.dash.services.Container;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.rbuck.dash.common.PropertiesHelper.getIntegerProperty;
+import static java.lang.System.getProperties;
+
+/**
+ * Runs a share of a distributed run on behalf of a {@link Coordinator}.
+ * <p/>
+ * The agent connects to the coordinator, retrying until it is listening,
+ * then runs the spec it receives in a container of its own: it creates the
+ * service and reports ready, starts when told to, begins each phase as told
+ * to, and upon stopping returns its full-run latency histograms. Should the
+ * coordinator go away the agent stops.
+ */
+public class Agent {
+
+    private static Logger logger = LoggerFactory.getLogger(Agent.class);
+
+    private final String host;
+    private final int port;
+    private final Container container = new Container();
+
+    /**
+     * Creates an agent.
+     *
+     * @param host the coordinator host
+     * @param port the coordinator port
+     */
+    public Agent(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Runs the agent until the coordinator stops the run.
+     *
+     * @throws Exception if the service fails, or the coordinator cannot be reached
+     */
+    public void run() throws Exception {
+        try (Channel channel = connect()) {
+            channel.send(Channel.HELLO);
+            Properties spec = Channel.decodeProperties(channel.expect(Channel.SPEC).payload);
+            for (String name : spec.stringPropertyNames()) {
+                System.setProperty(name, spec.getProperty(name));
+            }
+            logger.info("Received spec as agent " + spec.getProperty(Coordinator.AGENT_INDEX) +
+                    " of " + spec.getProperty(Coordinator.AGENT_COUNT));
+            try {
+                container.create();
+            } catch (Exception | Error e) {
+                channel.send(Channel.FAILED, Exceptions.toStringAllCauses(e));
+                throw e;
+            }
+            channel.send(Channel.READY);
+            channel.expect(Channel.START);
+            try {
+                container.start();
+                Channel.Message message;
+                while (!Channel.STOP.equals((message = channel.receive()).type)) {
+                    if (Channel.PHASE.equals(message.type)) {
+                        container.enterPhase(PhaseSchedule.Phase.valueOf(message.getText()));
+                    }
+                }
+            } finally {
+                container.stop();
+            }
+            channel.send(Channel.RESULT, Channel.encode(container.getTotalHistograms()));
+        }
+    }
+
+    /**
+     * Stops the run early.
+     */
+    public void stop() {
+        container.stop();
+    }
+
+    private Channel connect() throws IOException, InterruptedException {
+        final long deadline = System.nanoTime() +
+                TimeUnit.SECONDS.toNanos(getIntegerProperty(getProperties(), Coordinator.CLUSTER_TIMEOUT, 300));
+        while (true) {
+            try {
+                Channel channel = new Channel(new Socket(host, port));
+                logger.info("Connected to coordinator " + channel.getRemoteAddress());
+                return channel;
+            } catch (ConnectException e) {
+                if (System.nanoTime() > deadline) {
+                    throw e;
+                }
+                TimeUnit.SECONDS.sleep(1);
+            }
+        }
+    }
+}
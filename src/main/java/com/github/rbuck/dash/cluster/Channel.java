@@ -0,0 +1,164 @@
+package com.github.rbuck.dash.cluster;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+
+/**
+ * A connection between the coordinator and an agent, over which typed
+ * messages are exchanged. Each message is its type followed by a length
+ * prefixed payload, which may be empty.
+ */
+final class Channel implements Closeable {
+
+    static final String HELLO = "HELLO";
+    static final String SPEC = "SPEC";
+    static final String READY = "READY";
+    static final String FAILED = "FAILED";
+    static final String START = "START";
+    static final String PHASE = "PHASE";
+    static final String STOP = "STOP";
+    static final String RESULT = "RESULT";
+
+    private static final int MAX_PAYLOAD = 64 << 20;
+
+    /**
+     * A message received.
+     */
+    static final class Message {
+
+        final String type;
+        final byte[] payload;
+
+        Message(String type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+
+        String getText() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+    }
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    Channel(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    String getRemoteAddress() {
+        return String.valueOf(socket.getRemoteSocketAddress());
+    }
+
+    synchronized void send(String type) throws IOException {
+        send(type, new byte[0]);
+    }
+
+    synchronized void send(String type, String text) throws IOException {
+        send(type, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    synchronized void send(String type, byte[] payload) throws IOException {
+        out.writeUTF(type);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+    }
+
+    /**
+     * Receives the next message, waiting for it to arrive.
+     *
+     * @return the message
+     * @throws EOFException if the other end closed the connection
+     * @throws IOException  if the message cannot be read
+     */
+    Message receive() throws IOException {
+        String type = in.readUTF();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD) {
+            throw new IOException("Invalid message length (" + length + ") from " + getRemoteAddress());
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Message(type, payload);
+    }
+
+    /**
+     * Receives the next message, which must be of the expected type.
+     *
+     * @param type the expected type
+     * @return the message
+     * @throws IOException if the message cannot be read, or is of another type
+     */
+    Message expect(String type) throws IOException {
+        Message message = receive();
+        if (FAILED.equals(message.type)) {
+            throw new IOException("Agent " + getRemoteAddress() + " failed: " + message.getText());
+        }
+        if (!type.equals(message.type)) {
+            throw new IOException("Expected " + type + " from " + getRemoteAddress() + " but received " + message.type);
+        }
+        return message;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    static byte[] encode(Properties properties) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        properties.store(bytes, null);
+        return bytes.toByteArray();
+    }
+
+    static Properties decodeProperties(byte[] payload) throws IOException {
+        Properties properties = new Properties();
+        properties.load(new ByteArrayInputStream(payload));
+        return properties;
+    }
+
+    static byte[] encode(Map<String, Histogram> histograms) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(histograms.size());
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+            ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+            int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+            out.writeUTF(entry.getKey());
+            out.writeInt(length);
+            out.write(buffer.array(), 0, length);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static Map<String, Histogram> decodeHistograms(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        Map<String, Histogram> histograms = new TreeMap<>();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            byte[] encoded = new byte[in.readInt()];
+            in.readFully(encoded);
+            try {
+                histograms.put(name, Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(encoded), 0));
+            } catch (DataFormatException e) {
+                throw new IOException("Invalid histogram for " + name + ".", e);
+            }
+        }
+        return histograms;
+    }
+}
@@ -0,0 +1,227 @@
+package com.github.rbuck.dash.cluster;
+
+import com.github.rbuck.dash.common.CapacitySearch;
+import com.github.rbuck.dash.common.PhaseSchedule;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.rbuck.dash.common.Preconditions.checkArgument;
+import static com.github.rbuck.dash.common.PropertiesHelper.getBooleanProperty;
+import static com.github.rbuck.dash.common.PropertiesHelper.getIntegerProperty;
+import static com.github.rbuck.dash.common.PropertiesHelper.getLongProperty;
+
+/**
+ * Coordinates a run across several agents, each a Dash process of its own,
+ * and merges their results.
+ * <p/>
+ * The coordinator waits for the configured count of agents to connect, then
+ * sends each the test spec, less its share of the work: the limit and burst
+ * rates are divided evenly among agents, each creates entities from its own
+ * range of keys, and only the first agent initializes the database. Once
+ * every agent has created its service, all are started at once, and moved
+ * through the phases of the run together. When the run ends each agent
+ * returns its full-run latency histograms, which are merged losslessly, so
+ * the reported percentiles are those of all operations across all agents
+ * rather than an average of percentiles.
+ */
+public class Coordinator {
+
+    private static Logger logger = LoggerFactory.getLogger(Coordinator.class);
+
+    static final String AGENT_INDEX = "dash.cluster.agent.index";
+    static final String AGENT_COUNT = "dash.cluster.agent.count";
+    static final String CLUSTER_TIMEOUT = "dash.cluster.timeout";
+
+    private static final String RATES_LIMIT = "dash.driver.rates.limit";
+    private static final String RATES_BURST = "dash.driver.rates.burst";
+    private static final String KEYS_ORIGIN = "dash.keys.origin";
+    private static final String SKIP_INIT = "dash.db.skip.init";
+    private static final int KEYS_SHIFT = 40;
+    private static final int KEYS_BASES = 1 << 22;
+
+    private final Properties spec;
+    private final int agentCount;
+    private final int port;
+    private final int timeout;
+    private final List<Channel> agents = new ArrayList<>();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * Creates a coordinator.
+     *
+     * @param spec   the test spec to run
+     * @param agents the count of agents to run it on
+     * @param port   the port agents connect to
+     */
+    public Coordinator(Properties spec, int agents, int port) {
+        this.spec = spec;
+        this.agentCount = agents;
+        this.port = port;
+        this.timeout = getIntegerProperty(spec, CLUSTER_TIMEOUT, 300);
+
+        checkArgument(agents > 0, "The count of agents (" + agents + ") is not greater than zero; please fix your arguments.");
+        checkArgument(timeout > 0, "The " + CLUSTER_TIMEOUT + " property (" +
+                timeout + ") is not greater than zero; please fix your property declaration.");
+        long limit = getLongProperty(spec, RATES_LIMIT, 2000);
+        checkArgument(limit >= agents, "The " + RATES_LIMIT + " property (" +
+                limit + ") is less than the count of agents; please fix your property declaration.");
+        checkArgument(!new CapacitySearch(spec, limit).isEnabled(),
+                "Capacity search is not supported when distributed; please fix your property declaration.");
+    }
+
+    /**
+     * Runs the test spec on the agents, and reports the merged results.
+     *
+     * @throws IOException          if an agent fails or cannot be reached
+     * @throws InterruptedException if interrupted while waiting on agents
+     */
+    public void run() throws IOException, InterruptedException {
+        final PhaseSchedule schedule = new PhaseSchedule(spec);
+        try {
+            connect();
+            distribute();
+            for (Channel agent : agents) {
+                agent.expect(Channel.READY);
+            }
+            logger.info("All " + agentCount + " agents are ready; starting the run.");
+            broadcast(Channel.START, "");
+
+            long steadyNanos = 0;
+            List<PhaseSchedule.Phase> phases = schedule.getPhases();
+            boolean interrupted = false;
+            for (int i = 0; i < phases.size() && !interrupted; i++) {
+                PhaseSchedule.Phase phase = phases.get(i);
+                if (i > 0) {
+                    broadcast(Channel.PHASE, phase.name());
+                }
+                logger.info("Phase " + phase.getName() + " (" + schedule.getDuration(phase) + " seconds)");
+                long begin = System.nanoTime();
+                interrupted = stopped.await(schedule.getDuration(phase), TimeUnit.SECONDS);
+                if (phase == PhaseSchedule.Phase.STEADY) {
+                    steadyNanos = System.nanoTime() - begin;
+                }
+            }
+            broadcast(Channel.STOP, "");
+
+            Map<String, Histogram> merged = new TreeMap<>();
+            for (Channel agent : agents) {
+                Map<String, Histogram> results = Channel.decodeHistograms(agent.expect(Channel.RESULT).payload);
+                for (Map.Entry<String, Histogram> entry : results.entrySet()) {
+                    merged.merge(entry.getKey(), entry.getValue(), (a, b) -> {
+                        a.add(b);
+                        return a;
+                    });
+                }
+            }
+            report(merged, steadyNanos / 1e9);
+        } finally {
+            for (Channel agent : agents) {
+                try {
+                    agent.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Ends the current phase early and stops the run; the agents' results
+     * are still collected and reported.
+     */
+    public void stop() {
+        stopped.countDown();
+    }
+
+    private void connect() throws IOException {
+        try (ServerSocket server = new ServerSocket(port)) {
+            server.setSoTimeout((int) TimeUnit.SECONDS.toMillis(timeout));
+            logger.info("Waiting for " + agentCount + " agents on port " + port);
+            while (agents.size() < agentCount) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    throw new IOException("Timed out waiting for agents; " + agents.size() + " of " + agentCount + " connected.", e);
+                }
+                Channel agent = new Channel(socket);
+                agents.add(agent);
+                agent.expect(Channel.HELLO);
+                logger.info("Agent " + agents.size() + " of " + agentCount + " connected from " + agent.getRemoteAddress());
+            }
+        }
+    }
+
+    private void distribute() throws IOException {
+        final long keyBase = ThreadLocalRandom.current().nextLong(1, KEYS_BASES - agentCount);
+        for (int i = 0; i < agentCount; i++) {
+            agents.get(i).send(Channel.SPEC, Channel.encode(getAgentSpec(i, keyBase)));
+        }
+    }
+
+    /**
+     * Get the spec an agent runs: the test spec with the agent's share of
+     * the limit and burst rates, its own range of keys, and database
+     * initialization left to the first agent.
+     */
+    Properties getAgentSpec(int index, long keyBase) {
+        Properties agentSpec = new Properties();
+        agentSpec.putAll(spec);
+        agentSpec.setProperty(RATES_LIMIT, Long.toString(share(getLongProperty(spec, RATES_LIMIT, 2000), index)));
+        if (spec.getProperty(RATES_BURST) != null) {
+            agentSpec.setProperty(RATES_BURST, Long.toString(Math.max(1, share(getLongProperty(spec, RATES_BURST, 0), index))));
+        }
+        agentSpec.setProperty(KEYS_ORIGIN, Long.toString((keyBase + index) << KEYS_SHIFT));
+        agentSpec.setProperty(SKIP_INIT, Boolean.toString(index > 0 || getBooleanProperty(spec, SKIP_INIT, false)));
+        agentSpec.setProperty(AGENT_INDEX, Integer.toString(index));
+        agentSpec.setProperty(AGENT_COUNT, Integer.toString(agentCount));
+        return agentSpec;
+    }
+
+    private long share(long total, int index) {
+        return total / agentCount + (index < total % agentCount ? 1 : 0);
+    }
+
+    private void broadcast(String type, String text) throws IOException {
+        for (Channel agent : agents) {
+            agent.send(type, text);
+        }
+    }
+
+    /**
+     * Prints a summary of the merged latencies of the steady state, and
+     * writes the percentile distribution of each timer in milliseconds.
+     */
+    private void report(Map<String, Histogram> merged, double seconds) throws IOException {
+        final double millis = TimeUnit.MILLISECONDS.toNanos(1);
+        File logDir = new File(System.getProperty("dash.log.dir", "."));
+        System.out.println(String.format("%-12s%-12s%-12s%-9s%-9s%-9s%-9s%-9s",
+                "Name", "Count", "Rate", "Mean", "Median", "99%", "99.9%", "Max"));
+        for (Map.Entry<String, Histogram> entry : merged.entrySet()) {
+            Histogram histogram = entry.getValue();
+            System.out.println(String.format(Locale.US, "%-12s%-12d%-12.0f%-9.2f%-9.2f%-9.2f%-9.2f%-9.2f",
+                    entry.getKey(),
+                    histogram.getTotalCount(),
+                    seconds > 0 ? histogram.getTotalCount() / seconds : 0.0,
+                    histogram.getMean() / millis,
+                    histogram.getValueAtPercentile(50) / millis,
+                    histogram.getValueAtPercentile(99) / millis,
+                    histogram.getValueAtPercentile(99.9) / millis,
+                    histogram.getMaxValue() / millis));
+            File file = new File(logDir, entry.getKey() + ".hgrm");
+            try (PrintStream out = new PrintStream(new FileOutputStream(file), false, "UTF-8")) {
+                histogram.outputPercentileDistribution(out, millis);
+            }
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.github.rbuck.dash.common;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.rbuck.dash.common.PropertiesHelper.getDoubleProperty;
+import static com.github.rbuck.dash.common.PropertiesHelper.getLongProperty;
+import static com.github.rbuck.dash.common.PropertiesHelper.getStringProperty;
+
+/**
+ * Searches for the highest throughput sustainable within a latency service
+ * level objective (SLO).
+ * <p/>
+ * The search runs a series of trials, each at a target rate below the limit
+ * rate; a trial is within the SLO if the throughput achieved is close to its
+ * target, no operation failed, and the p99 latency of every tag is within
+ * that tag's objective; failed operations, timed apart as
+ * {@code <tag>.failed}, count neither as throughput nor as a tag. A
+ * step search climbs from a minimum rate by a fixed step until a trial
+ * fails or the limit rate is reached; a binary search first tries the limit
+ * rate then bisects between the highest rate passed and the lowest failed
+ * until the two are within a resolution of one another.
+ * <p/>
+ * Besides the highest sustainable throughput the search reports the knee of
+ * the latency curve, the trial beyond which latency climbs steeply relative
+ * to throughput; it is found by the Kneedle method, as the trial furthest
+ * below the chord of the normalized curve.
+ */
+public class CapacitySearch {
+
+    private static final String SEARCH_MODE = "dash.search.mode";
+    private static final String SEARCH_SLO = "dash.search.slo.p99";
+    private static final String SEARCH_RATE_MIN = "dash.search.rate.min";
+    private static final String SEARCH_RATE_STEP = "dash.search.rate.step";
+    private static final String SEARCH_RESOLUTION = "dash.search.resolution";
+    private static final String SEARCH_ATTAINMENT = "dash.search.attainment";
+    private static final String SEARCH_TRIAL_DURATION = "dash.search.trial.duration";
+    private static final String SEARCH_TRIAL_SETTLE = "dash.search.trial.settle";
+
+    private static final double MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    enum Mode {
+        NONE,
+        STEP,
+        BINARY
+    }
+
+    /**
+     * The outcome of one trial.
+     */
+    public static final class Trial {
+
+        private final double target;
+        private final double throughput;
+        private final Map<String, Double> latencies;
+        private final long failures;
+        private final boolean withinSlo;
+
+        Trial(double target, double throughput, Map<String, Double> latencies, long failures, boolean withinSlo) {
+            this.target = target;
+            this.throughput = throughput;
+            this.latencies = latencies;
+            this.failures = failures;
+            this.withinSlo = withinSlo;
+        }
+
+        /**
+         * Get the rate the trial aimed for.
+         *
+         * @return the target rate in operations per second
+         */
+        public double getTarget() {
+            return target;
+        }
+
+        /**
+         * Get the rate at which operations completed.
+         *
+         * @return the achieved throughput in operations per second
+         */
+        public double getThroughput() {
+            return throughput;
+        }
+
+        /**
+         * Get the p99 latency of each tag.
+         *
+         * @return the latencies in milliseconds, by tag
+         */
+        public Map<String, Double> getLatencies() {
+            return latencies;
+        }
+
+        /**
+         * Get the count of operations that failed during the trial.
+         *
+         * @return the count of failures
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * Get the highest p99 latency of any tag.
+         *
+         * @return the latency in milliseconds
+         */
+        public double getWorstLatency() {
+            double worst = 0;
+            for (double latency : latencies.values()) {
+                worst = Math.max(worst, latency);
+            }
+            return worst;
+        }
+
+        /**
+         * Determine if the trial met the service level objective.
+         *
+         * @return true if it did
+         */
+        public boolean isWithinSlo() {
+            return withinSlo;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("target %.0f ops/sec, achieved %.0f ops/sec, p99 %s ms, %s%s", target, throughput,
+                    format(latencies), failures > 0 ? failures + " failures, " : "", withinSlo ? "within SLO" : "exceeds SLO");
+        }
+
+        private static String format(Map<String, Double> latencies) {
+            StringBuilder builder = new StringBuilder("{");
+            for (Map.Entry<String, Double> entry : latencies.entrySet()) {
+                if (builder.length() > 1) {
+                    builder.append(", ");
+                }
+                builder.append(entry.getKey()).append('=').append(String.format("%.2f", entry.getValue()));
+            }
+            return builder.append('}').toString();
+        }
+    }
+
+    private final Properties properties;
+    private final Mode mode;
+    private final double max;
+    private final double min;
+    private final double step;
+    private final double resolution;
+    private final double attainment;
+    private final double slo;
+    private final long trialDuration;
+    private final long settleDuration;
+    private final List<Trial> trials = new ArrayList<>();
+
+    private double passed;
+    private double failed;
+    private double next;
+
+    /**
+     * Creates a search.
+     *
+     * @param properties the search configuration
+     * @param max        the highest rate to search, the limit rate
+     */
+    public CapacitySearch(Properties properties, double max) {
+        this.properties = properties;
+        String value = getStringProperty(properties, SEARCH_MODE, Mode.NONE.name());
+        try {
+            this.mode = Mode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("The " + SEARCH_MODE + " property (" +
+                    value + ") is not one of none, step or binary; please fix your property declaration.");
+        }
+        this.max = max;
+        this.step = getDoubleProperty(properties, SEARCH_RATE_STEP, max / 10);
+        this.min = getDoubleProperty(properties, SEARCH_RATE_MIN, step);
+        this.resolution = getDoubleProperty(properties, SEARCH_RESOLUTION, 0.05);
+        this.attainment = getDoubleProperty(properties, SEARCH_ATTAINMENT, 0.95);
+        this.slo = getDoubleProperty(properties, SEARCH_SLO, 0);
+        this.trialDuration = getLongProperty(properties, SEARCH_TRIAL_DURATION, 30);
+        this.settleDuration = getLongProperty(properties, SEARCH_TRIAL_SETTLE, 5);
+
+        if (mode != Mode.NONE) {
+            Preconditions.checkArgument(max > 0, "The dash.driver.rates.limit property (" +
+                    max + ") is not greater than zero; please fix your property declaration.");
+            Preconditions.checkArgument(slo > 0, "The " + SEARCH_SLO + " property (" +
+                    slo + ") is not greater than zero; please fix your property declaration.");
+            Preconditions.checkArgument(step > 0, "The " + SEARCH_RATE_STEP + " property (" +
+                    step + ") is not greater than zero; please fix your property declaration.");
+            Preconditions.checkArgument(min > 0 && min <= max, "The " + SEARCH_RATE_MIN + " property (" +
+                    min + ") is not greater than zero and at most the limit rate; please fix your property declaration.");
+            Preconditions.checkArgument(resolution > 0 && resolution < 1, "The " + SEARCH_RESOLUTION + " property (" +
+                    resolution + ") is not between zero and one exclusive; please fix your property declaration.");
+            Preconditions.checkArgument(attainment > 0 && attainment <= 1, "The " + SEARCH_ATTAINMENT + " property (" +
+                    attainment + ") is not greater than zero and at most one; please fix your property declaration.");
+            Preconditions.checkArgument(trialDuration > 0, "The " + SEARCH_TRIAL_DURATION + " property (" +
+                    trialDuration + ") is not greater than zero; please fix your property declaration.");
+            Preconditions.checkArgument(settleDuration >= 0, "The " + SEARCH_TRIAL_SETTLE + " property (" +
+                    settleDuration + ") is not greater than or equal to zero; please fix your property declaration.");
+        }
+        this.passed = mode == Mode.BINARY ? min : 0;
+        this.failed = Double.NaN;
+        this.next = mode == Mode.BINARY ? max : min;
+    }
+
+    /**
+     * Determine if a search was configured.
+     *
+     * @return true if searching
+     */
+    public boolean isEnabled() {
+        return mode != Mode.NONE;
+    }
+
+    /**
+     * Get how long each trial is measured for.
+     *
+     * @return the trial duration in seconds
+     */
+    public long getTrialDuration() {
+        return trialDuration;
+    }
+
+    /**
+     * Get how long each trial runs at its rate before being measured, so
+     * that queues drain or fill after the rate changes.
+     *
+     * @return the settle duration in seconds
+     */
+    public long getSettleDuration() {
+        return settleDuration;
+    }
+
+    /**
+     * Determine if there is another trial to run.
+     *
+     * @return true if the search has not converged
+     */
+    public boolean hasNext() {
+        return isEnabled() && !Double.isNaN(next);
+    }
+
+    /**
+     * Get the target rate of the next trial.
+     *
+     * @return the target rate in operations per second
+     */
+    public double next() {
+        return next;
+    }
+
+    /**
+     * Records the outcome of the trial at the next target rate, and advances
+     * the search.
+     *
+     * @param seconds   the duration the trial was measured for
+     * @param latencies the latencies recorded during the trial, by tag,
+     *                  along with those of failures by {@code <tag>.failed}
+     * @return the trial outcome
+     */
+    public Trial record(double seconds, Map<String, Histogram> latencies) {
+        final double target = next;
+        long count = 0;
+        long failures = 0;
+        boolean withinSlo = true;
+        Map<String, Double> p99 = new TreeMap<>();
+        for (Map.Entry<String, Histogram> entry : latencies.entrySet()) {
+            Histogram histogram = entry.getValue();
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            if (entry.getKey().endsWith("." + OutcomeMeters.FAILED)) {
+                failures += histogram.getTotalCount();
+                continue;
+            }
+            count += histogram.getTotalCount();
+            double latency = histogram.getValueAtPercentile(99.0) / MILLIS;
+            p99.put(entry.getKey(), latency);
+            withinSlo &= latency <= getSlo(entry.getKey());
+        }
+        double throughput = count / Math.max(seconds, 1e-9);
+        withinSlo &= count > 0 && failures == 0 && throughput >= target * attainment;
+        Trial trial = new Trial(target, throughput, p99, failures, withinSlo);
+        trials.add(trial);
+        advance(target, withinSlo);
+        return trial;
+    }
+
+    private void advance(double target, boolean withinSlo) {
+        if (mode == Mode.STEP) {
+            if (!withinSlo || target >= max) {
+                next = Double.NaN;
+            } else {
+                next = Math.min(max, target + step);
+            }
+        } else {
+            if (withinSlo) {
+                passed = target;
+            } else {
+                failed = target;
+            }
+            if (withinSlo && target >= max) {
+                next = Double.NaN;
+            } else if (failed - passed <= resolution * max) {
+                next = Double.NaN;
+            } else {
+                next = (passed + failed) / 2;
+            }
+        }
+    }
+
+    private double getSlo(String tag) {
+        return getDoubleProperty(properties, SEARCH_SLO + "." + tag, slo);
+    }
+
+    /**
+     * Get the trials run so far, in order.
+     *
+     * @return the trials
+     */
+    public List<Trial> getTrials() {
+        return Collections.unmodifiableList(trials);
+    }
+
+    /**
+     * Get the trial with the highest throughput within the SLO.
+     *
+     * @return the trial, or null if none were within the SLO
+     */
+    public Trial getSustainable() {
+        Trial sustainable = null;
+        for (Trial trial : trials) {
+            if (trial.isWithinSlo() && (sustainable == null || trial.getThroughput() > sustainable.getThroughput())) {
+                sustainable = trial;
+            }
+        }
+        return sustainable;
+    }
+
+    /**
+     * Get the knee of the latency curve, the trial beyond which p99 latency
+     * rises steeply relative to throughput.
+     *
+     * @return the trial, or null if there are too few trials, or latency
+     * does not rise more than linearly with throughput
+     */
+    public Trial getKnee() {
+        List<Trial> curve = new ArrayList<>(trials);
+        if (curve.size() < 3) {
+            return null;
+        }
+        curve.sort(Comparator.comparingDouble(Trial::getThroughput));
+        double x0 = curve.get(0).getThroughput();
+        double x1 = curve.get(curve.size() - 1).getThroughput();
+        double y0 = Double.MAX_VALUE;
+        double y1 = 0;
+        for (Trial trial : curve) {
+            y0 = Math.min(y0, trial.getWorstLatency());
+            y1 = Math.max(y1, trial.getWorstLatency());
+        }
+        if (x1 <= x0 || y1 <= y0) {
+            return null;
+        }
+        Trial knee = null;
+        double distance = 0;
+        for (Trial trial : curve) {
+            double x = (trial.getThroughput() - x0) / (x1 - x0);
+            double y = (trial.getWorstLatency() - y0) / (y1 - y0);
+            if (x - y > distance) {
+                distance = x - y;
+                knee = trial;
+            }
+        }
+        return knee;
+    }
+
+    /**
+     * Writes every trial as a row of CSV, along with the outcome.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeReport(File file) throws IOException {
+        Set<String> tags = new TreeSet<>();
+        for (Trial trial : trials) {
+            tags.addAll(trial.getLatencies().keySet());
+        }
+        Trial sustainable = getSustainable();
+        Trial knee = getKnee();
+        try (PrintStream out = new PrintStream(new FileOutputStream(file), false, "UTF-8")) {
+            StringBuilder header = new StringBuilder("target,throughput");
+            for (String tag : tags) {
+                header.append(',').append(tag).append(".p99");
+            }
+            out.println(header.append(",failures,within_slo,sustainable,knee"));
+            for (Trial trial : trials) {
+                StringBuilder row = new StringBuilder(String.format(Locale.US, "%.1f,%.1f", trial.getTarget(), trial.getThroughput()));
+                for (String tag : tags) {
+                    Double latency = trial.getLatencies().get(tag);
+                    row.append(',').append(latency != null ? String.format(Locale.US, "%.3f", latency) : "");
+                }
+                row.append(',').append(trial.getFailures())
+                        .append(',').append(trial.isWithinSlo())
+                        .append(',').append(trial == sustainable)
+                        .append(',').append(trial == knee);
+                out.println(row);
+            }
+        }
+    }
+}
@@ -22,11 +22,16 @@ public class ConstantLimiter implements Limiter {
         tokenBucket = builder.build();
     }
 
-    private long getLimitRate() {
+    /**
+     * Get the target rate, in operations per second, that drivers are limited to.
+     *
+     * @return the limit rate
+     */
+    public static long getLimitRate() {
         return PropertiesHelper.getLongProperty(getProperties(), MIX_RATES_LIMIT, 2000);
     }
 
-    private long getBurstRate() {
+    private static long getBurstRate() {
         return PropertiesHelper.getLongProperty(getProperties(), MIX_RATES_BURST, getLimitRate());
     }
 
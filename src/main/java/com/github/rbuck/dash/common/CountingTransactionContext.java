@@ -0,0 +1,49 @@
+package com.github.rbuck.dash.common;
+
+import com.github.rbuck.retry.SqlTransactionContext;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A transaction context that counts the attempts made on each thread.
+ * <p/>
+ * Retry policies request a connection for every attempt at a transaction,
+ * so counting the connections requested by a thread between a call to
+ * {@link #reset()} and one to {@link #getRetries()} counts the retries of
+ * the transactions it ran meanwhile. Counts are kept per thread, so
+ * contexts may be shared, and no state is passed from services to policies.
+ */
+public class CountingTransactionContext implements SqlTransactionContext {
+
+    private static final ThreadLocal<int[]> attempts = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final SqlTransactionContext source;
+
+    public CountingTransactionContext(SqlTransactionContext source) {
+        this.source = source;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        attempts.get()[0]++;
+        return source.getConnection();
+    }
+
+    /**
+     * Resets the count of attempts made on the calling thread.
+     */
+    public static void reset() {
+        attempts.get()[0] = 0;
+    }
+
+    /**
+     * Get the count of retries made on the calling thread since the last
+     * reset, being all attempts but the first.
+     *
+     * @return the retry count
+     */
+    public static int getRetries() {
+        return Math.max(0, attempts.get()[0] - 1);
+    }
+}
@@ -0,0 +1,174 @@
+package com.github.rbuck.dash.common;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Properties;
+
+import static com.github.rbuck.dash.common.PropertiesHelper.getIntegerProperty;
+import static com.github.rbuck.dash.common.Preconditions.checkArgument;
+
+/**
+ * How the result sets of an operation are fetched, set on the statement
+ * before it is executed.
+ * <p/>
+ * Drivers differ in how they fetch results by default: MySQL Connector/J
+ * buffers the whole result on the heap unless asked to stream it, and the
+ * PostgreSQL driver only honors the fetch size with autocommit off, when it
+ * fetches through a server-side cursor. So the mode is one of:
+ * <ul>
+ * <li>{@code default}, fetching the designated number of rows per round
+ * trip, or leaving it to the driver when zero;</li>
+ * <li>{@code streaming}, streaming rows one at a time, the MySQL idiom of a
+ * forward-only, read-only statement with a fetch size of
+ * {@link Integer#MIN_VALUE};</li>
+ * <li>{@code cursor}, fetching the designated number of rows per round trip
+ * through a cursor held open by a transaction, the PostgreSQL idiom.</li>
+ * </ul>
+ * The mode and fetch size are declared by the dash.db.cursor.mode and
+ * dash.db.cursor.fetch.size properties, and may be overridden per operation
+ * tag by suffixing the tag, as in dash.db.cursor.mode.&lt;tag&gt;. Undeclared,
+ * they default to the cursor.mode and cursor.fetch.size properties of the
+ * dialect, again overridable per tag.
+ * <p/>
+ * Statements are prepared forward-only and read-only, the JDBC default, as
+ * streaming and cursors require.
+ */
+public final class CursorSettings {
+
+    public static final String CURSOR_MODE = "dash.db.cursor.mode";
+    public static final String CURSOR_FETCH_SIZE = "dash.db.cursor.fetch.size";
+
+    private static final String DIALECT_MODE = "cursor.mode";
+    private static final String DIALECT_FETCH_SIZE = "cursor.fetch.size";
+
+    /**
+     * How results are fetched.
+     */
+    public enum Mode {
+        DEFAULT,
+        STREAMING,
+        CURSOR
+    }
+
+    private final Mode mode;
+    private final int fetchSize;
+
+    public CursorSettings(Mode mode, int fetchSize) {
+        checkArgument(fetchSize >= 0, "The " + CURSOR_FETCH_SIZE + " property (" +
+                fetchSize + ") is less than zero; please fix your property declaration.");
+        this.mode = mode;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Creates the cursor settings of an operation.
+     *
+     * @param properties the workload properties
+     * @param dialect    the dialect, declaring the defaults
+     * @param tag        the operation tag
+     * @return the cursor settings
+     */
+    public static CursorSettings forTag(Properties properties, Dialect dialect, String tag) {
+        Properties defaults = new Properties();
+        String dialectMode = lookup(dialect.getProperties(), DIALECT_MODE, tag);
+        if (dialectMode != null) {
+            defaults.setProperty(CURSOR_MODE, dialectMode);
+        }
+        String dialectFetchSize = lookup(dialect.getProperties(), DIALECT_FETCH_SIZE, tag);
+        if (dialectFetchSize != null) {
+            defaults.setProperty(CURSOR_FETCH_SIZE, dialectFetchSize);
+        }
+        Properties merged = new Properties(defaults);
+        String mode = lookup(properties, CURSOR_MODE, tag);
+        if (mode != null) {
+            merged.setProperty(CURSOR_MODE, mode);
+        }
+        String fetchSize = lookup(properties, CURSOR_FETCH_SIZE, tag);
+        if (fetchSize != null) {
+            merged.setProperty(CURSOR_FETCH_SIZE, fetchSize);
+        }
+        return new CursorSettings(parseMode(merged.getProperty(CURSOR_MODE, "default")),
+                getIntegerProperty(merged, CURSOR_FETCH_SIZE, 0));
+    }
+
+    private static String lookup(Properties properties, String property, String tag) {
+        String value = properties.getProperty(property + "." + tag);
+        return value != null ? value : properties.getProperty(property);
+    }
+
+    private static Mode parseMode(String mode) {
+        switch (mode.trim().toLowerCase(Locale.ROOT)) {
+            case "default":
+                return Mode.DEFAULT;
+            case "streaming":
+                return Mode.STREAMING;
+            case "cursor":
+                return Mode.CURSOR;
+            default:
+                throw new IllegalArgumentException("The " + CURSOR_MODE + " property (" + mode +
+                        ") is not one of default, streaming or cursor; please fix your property declaration.");
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Applies these settings to a statement before it is executed; as the
+     * fetch size outlives an execution it is set every time, so statements
+     * cached for several operations fetch as each of them designates.
+     *
+     * @param statement the statement
+     * @throws SQLException if the driver rejects the settings
+     */
+    public void apply(Statement statement) throws SQLException {
+        statement.setFetchSize(mode == Mode.STREAMING ? Integer.MIN_VALUE : fetchSize);
+    }
+
+    /**
+     * Begins fetching on a connection, turning autocommit off in cursor mode
+     * so that the driver may hold a cursor open; the returned scope restores
+     * autocommit, ending the transaction, once the results are consumed.
+     *
+     * @param connection the connection queries are executed on
+     * @return the scope to close once the results are consumed
+     * @throws SQLException if autocommit could not be changed
+     */
+    public Scope begin(Connection connection) throws SQLException {
+        if (mode != Mode.CURSOR || !connection.getAutoCommit()) {
+            return () -> {
+            };
+        }
+        connection.setAutoCommit(false);
+        return () -> {
+            try {
+                // only reads are made, so nothing is lost rolling back...
+                connection.rollback();
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        };
+    }
+
+    /**
+     * The scope of a fetch, ended once its results are consumed.
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close() throws SQLException;
+    }
+
+    @Override
+    public String toString() {
+        return mode.name().toLowerCase(Locale.ROOT) + (mode != Mode.STREAMING ? ", fetch size " + fetchSize : "");
+    }
+}
@@ -0,0 +1,290 @@
+package com.github.rbuck.dash.common;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.rbuck.dash.common.Preconditions.checkArgument;
+import static com.github.rbuck.dash.common.PropertiesHelper.getBooleanProperty;
+import static com.github.rbuck.dash.common.PropertiesHelper.getIntegerProperty;
+
+/**
+ * A per-operation event log, for analyzing outliers after a run.
+ * <p/>
+ * Each thread executing operations owns a {@link Writer}, which appends one
+ * fixed-width binary record per operation to memory-mapped segment files of
+ * its own, so recording an event is a handful of stores into mapped memory,
+ * without locking or allocation. Once a segment fills up the writer maps the
+ * next; when a count of segments to retain is configured the oldest are
+ * deleted, so the log is a ring holding the most recent operations.
+ * <p/>
+ * Each segment begins with a header:
+ * <pre>
+ *     offset  size  field
+ *     0       8     magic, "DASHEVT1"
+ *     8       4     record size in bytes
+ *     12      4     writer id
+ *     16      8     origin, in {@link System#nanoTime()} units
+ *     24      8     origin, in milliseconds since the epoch
+ *     32      8     count of records written to the segment
+ * </pre>
+ * followed by the records:
+ * <pre>
+ *     offset  size  field
+ *     0       8     intended start time, in nanoTime units
+ *     8       8     actual start time, in nanoTime units
+ *     16      8     latency in nanoseconds, measured from the intended start
+ *     24      4     worker id
+ *     28      2     tag ordinal
+ *     30      1     outcome, see {@link Outcome}
+ *     31      1     retry count, saturated at 127
+ * </pre>
+ * All values are little-endian. The names of tags are written alongside,
+ * to {@code tags.properties}. See {@link EventLogReader} to convert logs to
+ * CSV.
+ */
+public class EventLog implements Closeable {
+
+    static final long MAGIC = 0x3154564548534144L; // "DASHEVT1" little-endian
+    static final int HEADER_SIZE = 40;
+    static final int RECORD_SIZE = 32;
+    static final int COUNT_OFFSET = 32;
+    static final String TAGS_FILE = "tags.properties";
+
+    private static final String EVENTS_ENABLED = "dash.events.enabled";
+    private static final String EVENTS_DIR = "dash.events.dir";
+    private static final String EVENTS_SEGMENT_RECORDS = "dash.events.segment.records";
+    private static final String EVENTS_SEGMENTS_RETAINED = "dash.events.segments.retained";
+
+    /**
+     * The outcome of an operation.
+     */
+    public enum Outcome {
+        SUCCESS,
+        FAILURE
+    }
+
+    private final File dir;
+    private final int segmentRecords;
+    private final int segmentsRetained;
+    private final long originNanos = System.nanoTime();
+    private final long originMillis = System.currentTimeMillis();
+    private final AtomicInteger writerIds = new AtomicInteger();
+    private final List<Writer> writers = new ArrayList<>();
+    private final Map<Integer, String> tags = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an event log.
+     *
+     * @param dir              the directory segment files are written to
+     * @param segmentRecords   the count of records per segment file
+     * @param segmentsRetained the count of most recent segments each writer
+     *                         retains, or zero to retain all
+     * @throws IOException if the directory cannot be created
+     */
+    public EventLog(File dir, int segmentRecords, int segmentsRetained) throws IOException {
+        checkArgument(segmentRecords > 0, "The " + EVENTS_SEGMENT_RECORDS + " property (" +
+                segmentRecords + ") is not greater than zero; please fix your property declaration.");
+        checkArgument(segmentsRetained >= 0, "The " + EVENTS_SEGMENTS_RETAINED + " property (" +
+                segmentsRetained + ") is less than zero; please fix your property declaration.");
+        checkArgument((long) segmentRecords * RECORD_SIZE + HEADER_SIZE <= Integer.MAX_VALUE, "The " +
+                EVENTS_SEGMENT_RECORDS + " property (" + segmentRecords + ") is too large; please fix your property declaration.");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create the event log directory " + dir);
+        }
+        // segments of a prior run would be taken for those of this one...
+        File[] stale = dir.listFiles((parent, name) -> name.startsWith("events-") && name.endsWith(".bin"));
+        if (stale != null) {
+            for (File file : stale) {
+                Files.delete(file.toPath());
+            }
+        }
+        this.dir = dir;
+        this.segmentRecords = segmentRecords;
+        this.segmentsRetained = segmentsRetained;
+    }
+
+    /**
+     * Opens the event log configured by the properties, if enabled.
+     *
+     * @param properties the configuration
+     * @return the event log, or null if disabled
+     * @throws IOException if the directory cannot be created
+     */
+    public static EventLog open(Properties properties) throws IOException {
+        if (!getBooleanProperty(properties, EVENTS_ENABLED, false)) {
+            return null;
+        }
+        String dir = properties.getProperty(EVENTS_DIR,
+                new File(properties.getProperty("dash.log.dir", "."), "events").getPath());
+        return new EventLog(new File(dir),
+                getIntegerProperty(properties, EVENTS_SEGMENT_RECORDS, 1 << 20),
+                getIntegerProperty(properties, EVENTS_SEGMENTS_RETAINED, 0));
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    /**
+     * Creates a writer, to be used by one thread only.
+     *
+     * @return the writer
+     * @throws IOException if its first segment cannot be mapped
+     */
+    public Writer newWriter() throws IOException {
+        Writer writer = new Writer(writerIds.getAndIncrement());
+        synchronized (writers) {
+            writers.add(writer);
+        }
+        return writer;
+    }
+
+    /**
+     * Names a tag ordinal, so the tag may be named when the log is read.
+     *
+     * @param ordinal the tag ordinal
+     * @param tag     the tag name
+     */
+    public void nameTag(int ordinal, String tag) {
+        tags.putIfAbsent(ordinal, tag);
+    }
+
+    /**
+     * Closes all writers, and writes the names of tags.
+     *
+     * @throws IOException if the names of tags cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writers) {
+            for (Writer writer : writers) {
+                writer.close();
+            }
+            writers.clear();
+        }
+        Properties names = new Properties();
+        for (Map.Entry<Integer, String> entry : new TreeMap<>(tags).entrySet()) {
+            names.setProperty(Integer.toString(entry.getKey()), entry.getValue());
+        }
+        try (OutputStream out = new FileOutputStream(new File(dir, TAGS_FILE))) {
+            names.store(out, "event log tag ordinals");
+        }
+    }
+
+    static String getSegmentName(int writer, int segment) {
+        return String.format("events-%04d-%06d.bin", writer, segment);
+    }
+
+    /**
+     * Appends events to the segments of one thread.
+     */
+    public final class Writer {
+
+        private final int id;
+        private int segment = -1;
+        private MappedByteBuffer buffer;
+        private long count;
+        private volatile boolean closed;
+
+        private Writer(int id) throws IOException {
+            this.id = id;
+            roll();
+        }
+
+        /**
+         * Appends an event.
+         *
+         * @param intendedStart the intended start time, in nanoTime units
+         * @param actualStart   the actual start time, in nanoTime units
+         * @param latency       the latency in nanoseconds
+         * @param worker        the worker id
+         * @param tag           the tag ordinal
+         * @param outcome       the outcome
+         * @param retries       the count of retries
+         * @throws IOException if the next segment cannot be mapped
+         */
+        public void append(long intendedStart, long actualStart, long latency, int worker, int tag,
+                           Outcome outcome, int retries) throws IOException {
+            if (closed) {
+                return;
+            }
+            if (count == segmentRecords) {
+                roll();
+            }
+            final MappedByteBuffer buffer = this.buffer;
+            final int offset = HEADER_SIZE + (int) count * RECORD_SIZE;
+            buffer.putLong(offset, intendedStart);
+            buffer.putLong(offset + 8, actualStart);
+            buffer.putLong(offset + 16, latency);
+            buffer.putInt(offset + 24, worker);
+            buffer.putShort(offset + 28, (short) tag);
+            buffer.put(offset + 30, (byte) outcome.ordinal());
+            buffer.put(offset + 31, (byte) Math.min(retries, Byte.MAX_VALUE));
+            buffer.putLong(COUNT_OFFSET, ++count);
+        }
+
+        private void roll() throws IOException {
+            segment++;
+            File file = new File(dir, getSegmentName(id, segment));
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) segmentRecords * RECORD_SIZE);
+            }
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(0, MAGIC);
+            buffer.putInt(8, RECORD_SIZE);
+            buffer.putInt(12, id);
+            buffer.putLong(16, originNanos);
+            buffer.putLong(24, originMillis);
+            buffer.putLong(COUNT_OFFSET, 0);
+            count = 0;
+            if (segmentsRetained > 0 && segment >= segmentsRetained) {
+                Files.deleteIfExists(new File(dir, getSegmentName(id, segment - segmentsRetained)).toPath());
+            }
+        }
+
+        private void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * Get the time of an event in nanoseconds since the epoch.
+     *
+     * @param nanos        the time in nanoTime units
+     * @param originNanos  the log origin in nanoTime units
+     * @param originMillis the log origin in milliseconds since the epoch
+     * @return the time in nanoseconds since the epoch
+     */
+    static long toEpochNanos(long nanos, long originNanos, long originMillis) {
+        return TimeUnit.MILLISECONDS.toNanos(originMillis) + (nanos - originNanos);
+    }
+
+    static Properties readTags(File dir) throws IOException {
+        Properties names = new Properties();
+        File file = new File(dir, TAGS_FILE);
+        if (file.isFile()) {
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                names.load(in);
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,170 @@
+package com.github.rbuck.dash.common;
+
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+/**
+ * Reads the segments of an {@link EventLog}, and converts them to CSV.
+ * <p/>
+ * Run from the command line with the event log directory, and optionally
+ * the CSV file to write, standard output otherwise:
+ * <pre>
+ *     java -cp 'lib/*' com.github.rbuck.dash.common.EventLogReader logs/events events.csv
+ * </pre>
+ * Times are written in nanoseconds since the epoch; latency, and the lag of
+ * the actual start behind the intended start, in nanoseconds.
+ */
+public class EventLogReader {
+
+    static final String CSV_HEADER = "intended_start_ns,actual_start_ns,latency_ns,start_lag_ns,tag,worker,outcome,retries";
+
+    /**
+     * An event read from the log.
+     */
+    public static final class Event {
+
+        long intendedStart;
+        long actualStart;
+        long latency;
+        int worker;
+        int tag;
+        EventLog.Outcome outcome;
+        int retries;
+
+        public long getIntendedStart() {
+            return intendedStart;
+        }
+
+        public long getActualStart() {
+            return actualStart;
+        }
+
+        public long getLatency() {
+            return latency;
+        }
+
+        public int getWorker() {
+            return worker;
+        }
+
+        public int getTag() {
+            return tag;
+        }
+
+        public EventLog.Outcome getOutcome() {
+            return outcome;
+        }
+
+        public int getRetries() {
+            return retries;
+        }
+    }
+
+    private final File dir;
+
+    public EventLogReader(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Get the segment files of the log, in writer and segment order.
+     *
+     * @return the segment files
+     */
+    public File[] getSegments() {
+        File[] segments = dir.listFiles((parent, name) -> name.startsWith("events-") && name.endsWith(".bin"));
+        if (segments == null) {
+            return new File[0];
+        }
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Reads every event of the log; the event passed is reused between calls.
+     *
+     * @param consumer accepts each event
+     * @throws IOException if a segment cannot be read, or is not a segment
+     */
+    public void forEach(Consumer<Event> consumer) throws IOException {
+        final Event event = new Event();
+        for (File segment : getSegments()) {
+            try (FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                if (buffer.limit() < EventLog.HEADER_SIZE || buffer.getLong(0) != EventLog.MAGIC) {
+                    throw new IOException("Not an event log segment: " + segment);
+                }
+                final int recordSize = buffer.getInt(8);
+                final long originNanos = buffer.getLong(16);
+                final long originMillis = buffer.getLong(24);
+                final long count = Math.min(buffer.getLong(EventLog.COUNT_OFFSET),
+                        (buffer.limit() - EventLog.HEADER_SIZE) / recordSize);
+                for (int i = 0; i < count; i++) {
+                    int offset = EventLog.HEADER_SIZE + i * recordSize;
+                    event.intendedStart = EventLog.toEpochNanos(buffer.getLong(offset), originNanos, originMillis);
+                    event.actualStart = EventLog.toEpochNanos(buffer.getLong(offset + 8), originNanos, originMillis);
+                    event.latency = buffer.getLong(offset + 16);
+                    event.worker = buffer.getInt(offset + 24);
+                    event.tag = buffer.getShort(offset + 28);
+                    event.outcome = EventLog.Outcome.values()[buffer.get(offset + 30)];
+                    event.retries = buffer.get(offset + 31);
+                    consumer.accept(event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes every event of the log as CSV, tags named where known.
+     *
+     * @param out the writer written to
+     * @throws IOException if the log cannot be read, or the CSV written
+     */
+    public void writeCsv(Writer out) throws IOException {
+        final Properties tags = EventLog.readTags(dir);
+        final StringBuilder line = new StringBuilder(128);
+        out.write(CSV_HEADER);
+        out.write('\n');
+        try {
+            forEach(event -> {
+                line.setLength(0);
+                line.append(event.intendedStart).append(',')
+                        .append(event.actualStart).append(',')
+                        .append(event.latency).append(',')
+                        .append(event.actualStart - event.intendedStart).append(',')
+                        .append(tags.getProperty(Integer.toString(event.tag), Integer.toString(event.tag))).append(',')
+                        .append(event.worker).append(',')
+                        .append(event.outcome.name()).append(',')
+                        .append(event.retries).append('\n');
+                try {
+                    out.append(line);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: EventLogReader <event log directory> [csv file]");
+            System.exit(1);
+        }
+        EventLogReader reader = new EventLogReader(new File(args[0]));
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(args.length > 1 ?
+                new FileOutputStream(args[1]) : new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8))) {
+            reader.writeCsv(out);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.rbuck.dash.common;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * A reservoir backed by an HdrHistogram {@link Recorder}.
+ * <p/>
+ * Recording is wait-free, so worker threads never contend on the reservoir,
+ * and no values are sampled away. Snapshots are per reporting interval: the
+ * {@link MetricsService} rolls every reservoir over once per period, after
+ * which {@link #getSnapshot()} returns the interval just ended, so that all
+ * reporters observe the same interval. The full-run histogram is kept as the
+ * sum of all intervals ended while measuring; the histogram of the current
+ * run phase is kept apart, so unmeasured phases such as a warm up can be
+ * reported separately, as is that of the current window, so callers may
+ * measure spans of their own choosing such as capacity search trials.
+ */
+public class HdrReservoir implements Reservoir {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+    private final Histogram phase = new Histogram(SIGNIFICANT_DIGITS);
+    private final Histogram window = new Histogram(SIGNIFICANT_DIGITS);
+
+    private volatile HdrSnapshot snapshot;
+    private Histogram interval;
+    private boolean measured = true;
+
+    public HdrReservoir() {
+        interval = recorder.getIntervalHistogram();
+        snapshot = new HdrSnapshot(interval.copy());
+    }
+
+    @Override
+    public int size() {
+        return snapshot.size();
+    }
+
+    @Override
+    public void update(long value) {
+        recorder.recordValue(value);
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Ends the current interval and starts the next; the ended interval
+     * becomes the snapshot observed by reporters.
+     *
+     * @return the histogram for the ended interval; it is recycled upon the
+     * next rollover, so callers must not retain it
+     */
+    synchronized Histogram rollover() {
+        interval = recorder.getIntervalHistogram(interval);
+        phase.add(interval);
+        window.add(interval);
+        if (measured) {
+            total.add(interval);
+        }
+        snapshot = new HdrSnapshot(interval.copy());
+        return interval;
+    }
+
+    /**
+     * Get a copy of the histogram of every value recorded across all ended
+     * intervals of measured phases.
+     *
+     * @return the full-run histogram
+     */
+    public synchronized Histogram getTotalHistogram() {
+        return total.copy();
+    }
+
+    /**
+     * Ends the current phase and starts the next; intervals ended from now
+     * on are added to the full-run histogram only if the next phase is
+     * measured. The current interval should be rolled over first so it is
+     * attributed to the phase it was recorded in.
+     *
+     * @param measured whether the next phase is measured
+     * @return the histogram of every value recorded in the ended phase
+     */
+    synchronized Histogram beginPhase(boolean measured) {
+        Histogram ended = phase.copy();
+        phase.reset();
+        this.measured = measured;
+        return ended;
+    }
+
+    /**
+     * Ends the current window and starts the next. The current interval
+     * should be rolled over first so it is attributed to the window it was
+     * recorded in.
+     *
+     * @return the histogram of every value recorded in the ended window
+     */
+    synchronized Histogram endWindow() {
+        Histogram ended = window.copy();
+        window.reset();
+        return ended;
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.rbuck.dash.common;
+
+import com.codahale.metrics.Snapshot;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of one reporting interval of an {@link HdrReservoir}.
+ * <p/>
+ * Unlike sampled snapshots, percentiles are exact to the precision of the
+ * underlying histogram, and the snapshot covers only the interval it was
+ * taken for, so it also yields the interval throughput.
+ */
+public class HdrSnapshot extends Snapshot {
+
+    private final Histogram histogram;
+
+    HdrSnapshot(Histogram histogram) {
+        this.histogram = histogram;
+    }
+
+    @Override
+    public double getValue(double quantile) {
+        return histogram.getValueAtPercentile(quantile * 100.0);
+    }
+
+    /**
+     * Returns the distinct recorded values; use the quantile accessors for
+     * anything that depends upon value frequency.
+     *
+     * @return the distinct recorded values, in ascending order
+     */
+    @Override
+    public long[] getValues() {
+        long[] values = new long[16];
+        int count = 0;
+        for (HistogramIterationValue value : histogram.recordedValues()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = histogram.highestEquivalentValue(value.getValueIteratedTo());
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, histogram.getTotalCount());
+    }
+
+    @Override
+    public long getMax() {
+        return histogram.getTotalCount() > 0 ? histogram.getMaxValue() : 0;
+    }
+
+    @Override
+    public double getMean() {
+        return histogram.getTotalCount() > 0 ? histogram.getMean() : 0;
+    }
+
+    @Override
+    public long getMin() {
+        return histogram.getTotalCount() > 0 ? histogram.getMinValue() : 0;
+    }
+
+    @Override
+    public double getStdDev() {
+        return histogram.getTotalCount() > 0 ? histogram.getStdDeviation() : 0;
+    }
+
+    @Override
+    public void dump(OutputStream output) {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+            for (long value : getValues()) {
+                out.printf("%d%n", value);
+            }
+        }
+    }
+
+    /**
+     * Get the count of operations recorded per second over the interval.
+     *
+     * @return the interval throughput
+     */
+    public double getRate() {
+        long elapsed = histogram.getEndTimeStamp() - histogram.getStartTimeStamp();
+        return elapsed > 0 ? histogram.getTotalCount() * (double) TimeUnit.SECONDS.toMillis(1) / elapsed : 0;
+    }
+}
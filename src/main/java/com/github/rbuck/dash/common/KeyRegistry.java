@@ -0,0 +1,193 @@
+package com.github.rbuck.dash.common;
+
+import com.github.rbuck.dash.common.distributions.KeyDistribution;
+import com.github.rbuck.dash.common.distributions.UniformDistribution;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An append-only registry of entity keys shared by all workers, which any
+ * of them may sample from at random.
+ * <p/>
+ * Keys are held off-heap as primitive longs, in segments allocated as the
+ * registry grows, so hundreds of millions of keys cost neither heap nor
+ * garbage collection. Appending reserves a slot with a single atomic
+ * increment and sampling only reads, so neither locks. A slot reserved but
+ * not yet written reads as empty and is skipped when sampling.
+ * <p/>
+ * A registry is memory-mapped either onto a temporary file, unlinked once
+ * opened, for the life of the process, or onto a named file so its keys
+ * persist from one run to the next; the count of keys in a named file is
+ * recorded when the registry is closed. Either way keys live in the page
+ * cache, rather than in direct buffers, whose total the JVM caps at the
+ * maximum heap size by default.
+ */
+public class KeyRegistry implements AutoCloseable {
+
+    private static final int SEGMENT_SHIFT = 20;
+    private static final int SEGMENT_KEYS = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_KEYS - 1;
+    private static final int SEGMENT_BYTES = SEGMENT_KEYS * Long.BYTES;
+    private static final int MAX_SEGMENTS = 1 << 12;
+    private static final int HEADER_BYTES = 4096;
+    private static final int SAMPLE_ATTEMPTS = 8;
+    private static final KeyDistribution UNIFORM = new UniformDistribution();
+
+    private final AtomicReferenceArray<ByteBuffer> segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+    private final AtomicLong size = new AtomicLong();
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+
+    private KeyRegistry(RandomAccessFile file) throws IOException {
+        this.file = file;
+        this.channel = file.getChannel();
+        if (file.length() >= Long.BYTES) {
+            size.set(file.readLong());
+            for (long index = 0; index < size.get(); index += SEGMENT_KEYS) {
+                segment((int) (index >>> SEGMENT_SHIFT));
+            }
+        }
+    }
+
+    /**
+     * Creates a registry for the life of the process, mapped onto a
+     * temporary file.
+     *
+     * @return the registry
+     * @throws IllegalStateException if the temporary file cannot be created
+     */
+    public static KeyRegistry create() {
+        try {
+            File temporary = File.createTempFile("dash-keys-", ".keys");
+            KeyRegistry registry = new KeyRegistry(new RandomAccessFile(temporary, "rw"));
+            // the mapping outlives the name, where the platform permits...
+            if (!temporary.delete()) {
+                temporary.deleteOnExit();
+            }
+            return registry;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create the key registry file.", e);
+        }
+    }
+
+    /**
+     * Opens a memory-mapped registry, creating its file if it does not
+     * exist; an existing file's keys are retained.
+     *
+     * @param file the registry file
+     * @return the registry
+     * @throws IOException if the file cannot be opened
+     */
+    public static KeyRegistry open(File file) throws IOException {
+        return new KeyRegistry(new RandomAccessFile(file, "rw"));
+    }
+
+    /**
+     * Appends a key.
+     *
+     * @param key the key, which must not be negative
+     */
+    public void add(long key) {
+        Preconditions.checkArgument(key >= 0, "Registry keys must not be negative");
+        long index = size.getAndIncrement();
+        segment((int) (index >>> SEGMENT_SHIFT)).putLong((int) (index & SEGMENT_MASK) * Long.BYTES, key + 1);
+    }
+
+    /**
+     * Samples a key uniformly at random.
+     *
+     * @return a registered key, or -1 if there are none
+     */
+    public long sample() {
+        return sample(UNIFORM);
+    }
+
+    /**
+     * Samples a key; keys are indexed by the distribution in the order they
+     * were appended.
+     *
+     * @param distribution the distribution of keys sampled
+     * @return a registered key, or -1 if there are none
+     */
+    public long sample(KeyDistribution distribution) {
+        long count = size.get();
+        if (count == 0) {
+            return -1;
+        }
+        for (int attempt = 0; attempt < SAMPLE_ATTEMPTS; attempt++) {
+            long index = distribution.next(count);
+            ByteBuffer segment = segments.get((int) (index >>> SEGMENT_SHIFT));
+            if (segment != null) {
+                long value = segment.getLong((int) (index & SEGMENT_MASK) * Long.BYTES);
+                if (value != 0) {
+                    return value - 1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the count of keys appended.
+     *
+     * @return the key count
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * Removes all keys; must not be called concurrently with other methods.
+     *
+     * @throws IOException if the file cannot be truncated
+     */
+    public void clear() throws IOException {
+        for (int i = 0; i < MAX_SEGMENTS; i++) {
+            segments.set(i, null);
+        }
+        size.set(0);
+        channel.truncate(0);
+        writeHeader();
+    }
+
+    /**
+     * Records the count of keys and releases the file.
+     *
+     * @throws IOException if the count cannot be recorded
+     */
+    @Override
+    public void close() throws IOException {
+        writeHeader();
+        file.close();
+    }
+
+    private void writeHeader() throws IOException {
+        file.seek(0);
+        file.writeLong(size.get());
+    }
+
+    private ByteBuffer segment(int index) {
+        Preconditions.checkArgument(index < MAX_SEGMENTS, "Key registry is full");
+        ByteBuffer segment = segments.get(index);
+        if (segment == null) {
+            try {
+                segment = channel.map(FileChannel.MapMode.READ_WRITE,
+                        HEADER_BYTES + (long) index * SEGMENT_BYTES, SEGMENT_BYTES);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to map key registry segment.", e);
+            }
+            segment.order(ByteOrder.nativeOrder());
+            if (!segments.compareAndSet(index, null, segment)) {
+                segment = segments.get(index);
+            }
+        }
+        return segment;
+    }
+}
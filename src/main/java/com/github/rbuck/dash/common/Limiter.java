@@ -3,10 +3,20 @@ package com.github.rbuck.dash.common;
 /**
  * Interface for driver limit and burst rates.
  * // prescription:
- * // * constant-rate (min),
+ * // * constant-rate (min), see ConstantLimiter,
+ * // * poisson arrivals at the limit rate, see PoissonLimiter,
  * // * uniform (frequency/percentile + spike-size) [100*0, 5*1000, max],
- * // * control how quickly come back to base rate
+ * //   and control how quickly come back to base rate, see SpikeLimiter
  */
 public interface Limiter {
     void consume(int tokens);
+
+    /**
+     * Get the rate the limiter currently admits operations at.
+     *
+     * @return the target rate in operations per second
+     */
+    default double getTargetRate() {
+        return ConstantLimiter.getLimitRate();
+    }
 }
@@ -4,21 +4,28 @@ import com.codahale.metrics.CsvReporter;
 import com.codahale.metrics.MetricFilter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Timer;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
 import org.elasticsearch.metrics.ElasticsearchReporter;
 import org.elasticsearch.metrics.JsonMetrics;
 import org.elasticsearch.metrics.percolation.Notifier;
 
-import java.io.Closeable;
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.net.*;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
+import static com.github.rbuck.dash.common.PropertiesHelper.getIntegerProperty;
 import static com.github.rbuck.dash.common.PropertiesHelper.getStringArrayProperty;
 
 /**
  * A metrics reporting service for the Coda Hale Metrics package.
+ * <p/>
+ * Timers created through this service are backed by {@link HdrReservoir}s.
+ * Once per reporting period the service rolls every reservoir over to a new
+ * interval, logs the ended intervals to the histogram log, then has each
+ * reporter publish, so every reporter sees the same per-interval snapshot.
  */
 public class MetricsService implements Closeable {
 
@@ -31,15 +38,45 @@ public class MetricsService implements Closeable {
         }
     }
 
+    private static final String HISTOGRAM_LOG_FILE = "dash.hlog";
+
     private final MetricRegistry metricRegistry;
     private final List<ScheduledReporter> reporters = new ArrayList<>();
+    private final Map<String, HdrReservoir> reservoirs = new ConcurrentSkipListMap<>();
+
+    private boolean histogramLog;
+    private ScheduledExecutorService executor;
+    private HistogramLogWriter histogramLogWriter;
+    private PhaseSchedule.Phase phase;
 
     public MetricsService(MetricRegistry metricRegistry) {
         this.metricRegistry = metricRegistry;
         setup();
     }
 
-    private static final String[] defaultReporters = {"console", "csv"};
+    /**
+     * Get the registry metrics are registered in.
+     *
+     * @return the metric registry
+     */
+    public MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    private static final String[] defaultReporters = {"console", "csv", "hlog"};
+
+    /**
+     * Get or create a timer whose durations are recorded in an
+     * {@link HdrReservoir}, along with a gauge of its interval throughput.
+     *
+     * @param name the name of the timer, typically the mix tag
+     * @return the timer
+     */
+    public Timer timer(String name) {
+        final HdrReservoir reservoir = reservoirs.computeIfAbsent(name, key -> new HdrReservoir());
+        metricRegistry.gauge(MetricRegistry.name(name, "rate"), () -> () -> ((HdrSnapshot) reservoir.getSnapshot()).getRate());
+        return metricRegistry.timer(name, () -> new Timer(reservoir));
+    }
 
     private void setup() {
         List<String> reporterNames = Arrays.asList(getStringArrayProperty(
@@ -56,9 +93,11 @@ public class MetricsService implements Closeable {
                     .formatFor(Locale.US)
                     .convertRatesTo(TimeUnit.SECONDS)
                     .convertDurationsTo(TimeUnit.MILLISECONDS)
-                    .build(new File(System.getProperty("dash.log.dir")));
+                    .build(getLogDir());
             reporters.add(reporter);
         }
+        // opened as reporters start, so that services never started leave no log behind...
+        histogramLog = reporterNames.contains("hlog");
         if (reporterNames.contains("elasticsearch")) {
             try {
                 final String[] defaultHosts = {"localhost:9200"};
@@ -83,18 +122,152 @@ public class MetricsService implements Closeable {
     }
 
     public void start() throws IOException {
-        for (ScheduledReporter reporter : reporters) {
-            reporter.start(5, TimeUnit.SECONDS);
+        if (histogramLog && histogramLogWriter == null) {
+            histogramLogWriter = new HistogramLogWriter(new File(getLogDir(), HISTOGRAM_LOG_FILE));
+            long now = System.currentTimeMillis();
+            histogramLogWriter.outputLogFormatVersion();
+            histogramLogWriter.outputStartTime(now);
+            histogramLogWriter.setBaseTime(now);
+            histogramLogWriter.outputLegend();
         }
+        final long period = getIntegerProperty(System.getProperties(), "dash.metrics.service.period", 5);
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-service");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::report, period, period, TimeUnit.SECONDS);
     }
 
     @Override
     public void close() throws IOException {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    report();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+        synchronized (this) {
+            endPhase(false);
+            phase = null;
+        }
+        if (histogramLogWriter != null) {
+            histogramLogWriter.close();
+            histogramLogWriter = null;
+            writePercentileDistributions();
+        }
         for (ScheduledReporter reporter : reporters) {
             reporter.close();
         }
     }
 
+    /**
+     * Begins a run phase, ending the prior one.
+     *
+     * @param next the phase begun
+     * @throws IOException if the percentile distributions of the prior phase
+     *                     cannot be written
+     */
+    public synchronized void beginPhase(PhaseSchedule.Phase next) throws IOException {
+        if (executor != null) {
+            report();
+        }
+        endPhase(next == PhaseSchedule.Phase.STEADY);
+        if (histogramLogWriter != null) {
+            histogramLogWriter.outputComment("[Phase " + next.getName() + " began at " +
+                    System.currentTimeMillis() / 1000.0 + "]");
+        }
+        phase = next;
+    }
+
+    /**
+     * Get the full-run histogram of every timer, the steady state alone when
+     * the run is phased.
+     *
+     * @return a copy of the full-run histogram of each timer, by name
+     */
+    public Map<String, Histogram> getTotalHistograms() {
+        Map<String, Histogram> totals = new TreeMap<>();
+        for (Map.Entry<String, HdrReservoir> entry : reservoirs.entrySet()) {
+            totals.put(entry.getKey(), entry.getValue().getTotalHistogram());
+        }
+        return totals;
+    }
+
+    /**
+     * Ends the current window of every timer early, and starts the next.
+     *
+     * @return the histogram of the ended window for each timer, by name
+     */
+    public synchronized Map<String, Histogram> endWindow() {
+        if (executor != null) {
+            report();
+        }
+        Map<String, Histogram> ended = new TreeMap<>();
+        for (Map.Entry<String, HdrReservoir> entry : reservoirs.entrySet()) {
+            ended.put(entry.getKey(), entry.getValue().endWindow());
+        }
+        return ended;
+    }
+
+    /**
+     * Ends the current phase, writing its percentile distributions alongside
+     * the histogram log unless it is the steady state, which the full-run
+     * distributions cover.
+     */
+    private void endPhase(boolean measured) throws IOException {
+        final boolean write = histogramLogWriter != null && phase != null && phase != PhaseSchedule.Phase.STEADY;
+        for (Map.Entry<String, HdrReservoir> entry : reservoirs.entrySet()) {
+            Histogram ended = entry.getValue().beginPhase(measured);
+            if (write && ended.getTotalCount() > 0) {
+                writePercentileDistribution(entry.getKey() + "." + phase.getName(), ended);
+            }
+        }
+    }
+
+    private synchronized void report() {
+        for (Map.Entry<String, HdrReservoir> entry : reservoirs.entrySet()) {
+            Histogram interval = entry.getValue().rollover();
+            if (histogramLogWriter != null) {
+                interval.setTag(entry.getKey());
+                histogramLogWriter.outputIntervalHistogram(interval);
+            }
+        }
+        for (ScheduledReporter reporter : reporters) {
+            try {
+                reporter.report();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Writes the full-run percentile distribution for each timer, in
+     * milliseconds, alongside the histogram log.
+     */
+    private void writePercentileDistributions() throws IOException {
+        for (Map.Entry<String, HdrReservoir> entry : reservoirs.entrySet()) {
+            writePercentileDistribution(entry.getKey(), entry.getValue().getTotalHistogram());
+        }
+    }
+
+    private static void writePercentileDistribution(String name, Histogram histogram) throws IOException {
+        File file = new File(getLogDir(), name + ".hgrm");
+        try (PrintStream out = new PrintStream(new FileOutputStream(file), false, "UTF-8")) {
+            histogram.outputPercentileDistribution(out, (double) TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    private static File getLogDir() {
+        return new File(System.getProperty("dash.log.dir", "."));
+    }
+
     private String getBindAddress(String[] addresses) {
         String nodeId = null;
         for (String address : addresses) {
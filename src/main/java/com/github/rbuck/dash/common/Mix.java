@@ -1,9 +1,6 @@
 package com.github.rbuck.dash.common;
 
-import java.util.Iterator;
-import java.util.NoSuchElementException;
-import java.util.Properties;
-import java.util.Random;
+import java.util.*;
 
 import static com.github.rbuck.dash.common.Preconditions.checkArgument;
 import static com.github.rbuck.dash.common.PropertiesHelper.getIntegerArrayProperty;
@@ -11,9 +8,35 @@ import static com.github.rbuck.dash.common.PropertiesHelper.getStringArrayProper
 
 /**
  * Prescribes a workload mix and identifies the next operation type to perform.
+ * <p/>
+ * Operation types are drawn by {@link Sampler}s, of which each worker should
+ * own one so that drawing is free of contention. Two kinds are supported:
+ * <p/>
+ * - random, the default, draws independently in constant time from an alias
+ * table, each type with exactly its configured probability;
+ * <p/>
+ * - round-robin, a smooth weighted round-robin that interleaves types such
+ * that every 100 consecutive draws hit the configured ratios exactly.
+ * <p/>
+ * When a seed is configured, samplers are created from streams split off a
+ * seeded root in creation order, so each sampler's sequence of operations is
+ * reproducible from run to run.
  */
 public class Mix implements Iterable<Mix.Type> {
 
+    /**
+     * Draws a sequence of operation types; samplers are not thread safe.
+     */
+    public interface Sampler {
+
+        /**
+         * Identifies the next operation type to perform.
+         *
+         * @return the next operation type
+         */
+        Type next();
+    }
+
     public static class Type {
 
         private final int ordinal;
@@ -40,13 +63,20 @@ public class Mix implements Iterable<Mix.Type> {
 
     }
 
+    private enum Kind {
+        RANDOM,
+        ROUND_ROBIN
+    }
+
     private final Type[] types;
 
-    private final Random random;
+    private final Kind kind;
+    private final double[] probability;
+    private final int[] alias;
+    private final SplittableRandom root;
+    private final ThreadLocal<Sampler> samplers = ThreadLocal.withInitial(this::newSampler);
 
     public Mix(Properties properties) {
-        random = new Random();
-
         int[] workloadMix = getIntegerArrayProperty(properties, "dash.workload.mix", new int[0]);
         String[] workloadTag = getStringArrayProperty(properties, "dash.workload.tag", new String[0]);
 
@@ -63,6 +93,61 @@ public class Mix implements Iterable<Mix.Type> {
             quantumLimit += workloadMix[ordinal];
             types[ordinal] = new Type(ordinal, workloadTag[ordinal], quantumLimit);
         }
+
+        String sampler = properties.getProperty("dash.workload.sampler", "random");
+        try {
+            kind = Kind.valueOf(sampler.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("The dash.workload.sampler property (" +
+                    sampler + ") is not one of random or round-robin; please fix your property declaration.");
+        }
+
+        String seed = properties.getProperty("dash.workload.seed");
+        checkArgument(seed == null || TypeValidator.isLong(seed), "The dash.workload.seed property (" +
+                seed + ") is not an integer; please fix your property declaration.");
+        root = seed != null ? new SplittableRandom(Long.parseLong(seed)) : new SplittableRandom();
+
+        probability = new double[workloadMix.length];
+        alias = new int[workloadMix.length];
+        buildAliasTable(workloadMix);
+    }
+
+    /**
+     * Builds the alias table using Vose's method; afterwards each column i is
+     * chosen with equal probability and then yields type i with probability
+     * {@code probability[i]}, otherwise type {@code alias[i]}.
+     */
+    private void buildAliasTable(int[] weights) {
+        final int n = weights.length;
+        final double[] scaled = new double[n];
+        final Deque<Integer> small = new ArrayDeque<>();
+        final Deque<Integer> large = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / 100.0;
+            if (scaled[i] < 1.0) {
+                small.push(i);
+            } else {
+                large.push(i);
+            }
+        }
+        while (!small.isEmpty() && !large.isEmpty()) {
+            int less = small.pop();
+            int more = large.pop();
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) {
+                small.push(more);
+            } else {
+                large.push(more);
+            }
+        }
+        while (!large.isEmpty()) {
+            probability[large.pop()] = 1.0;
+        }
+        while (!small.isEmpty()) {
+            probability[small.pop()] = 1.0; // rounding residue only
+        }
     }
 
     @Override
@@ -90,17 +175,72 @@ public class Mix implements Iterable<Mix.Type> {
         };
     }
 
+    /**
+     * Identifies the next operation type to perform, using a sampler owned by
+     * the calling thread. Services wanting reproducible sequences should
+     * instead hold a sampler per context, see {@link #newSampler()}.
+     *
+     * @return the next operation type
+     */
     public Type next() {
-        Type result = null;
-        assert types.length > 0;
-        int quantum = random.nextInt(101);
-        for (Type type : types) {
-            result = type;
-            if (type.getQuantumLimit() > 0 && quantum <= type.getQuantumLimit()) {
-                break;
+        return samplers.get().next();
+    }
+
+    /**
+     * Creates a new sampler of the configured kind. When seeded, the n-th
+     * sampler created always produces the same sequence.
+     *
+     * @return a new sampler
+     */
+    public Sampler newSampler() {
+        final SplittableRandom random;
+        synchronized (root) {
+            random = root.split();
+        }
+        if (kind == Kind.ROUND_ROBIN) {
+            return new RoundRobinSampler(random.nextInt(100));
+        }
+        return () -> {
+            double u = random.nextDouble() * types.length;
+            int column = (int) u;
+            return types[u - column < probability[column] ? column : alias[column]];
+        };
+    }
+
+    /**
+     * A smooth weighted round-robin; each draw credits every type by its
+     * weight and picks the type with the highest credit, debiting it by the
+     * total weight. Types are interleaved rather than issued in runs.
+     */
+    private class RoundRobinSampler implements Sampler {
+
+        private final int[] weights = new int[types.length];
+        private final int[] credits = new int[types.length];
+
+        RoundRobinSampler(int skip) {
+            int previous = 0;
+            for (int i = 0; i < types.length; i++) {
+                weights[i] = types[i].getQuantumLimit() - previous;
+                previous = types[i].getQuantumLimit();
+            }
+            // stagger samplers so workers do not issue types in lock-step
+            for (int i = 0; i < skip; i++) {
+                next();
+            }
+        }
+
+        @Override
+        public Type next() {
+            int selected = 0;
+            for (int i = 0; i < types.length; i++) {
+                credits[i] += weights[i];
+                if (credits[i] > credits[selected]) {
+                    selected = i;
+                }
             }
+            credits[selected] -= 100;
+            return types[selected];
         }
-        return result;
     }
 
     public Type getType(int ordinal) {
@@ -0,0 +1,106 @@
+package com.github.rbuck.dash.common;
+
+/**
+ * The count, sum, mean and variance of a sample, accumulated value by value
+ * or merged from the moments of disjoint partitions of the sample.
+ * <p/>
+ * Values are accumulated by Welford's method, and partitions merged by that
+ * of Chan et al., so merging the moments of any partitioning of a sample
+ * gives those of the whole, up to rounding, without the cancellation that
+ * computing the variance from the sum of squares suffers.
+ */
+public final class Moments {
+
+    private long count;
+    private double sum;
+    private double mean;
+    private double m2;
+
+    public Moments() {
+    }
+
+    /**
+     * Creates the moments of a sample from its count, sum and sum of squares,
+     * as server-side aggregates provide them.
+     *
+     * @param count        the count of values
+     * @param sum          the sum of the values
+     * @param sumOfSquares the sum of the squares of the values
+     * @return the moments
+     */
+    public static Moments of(long count, double sum, double sumOfSquares) {
+        Moments moments = new Moments();
+        if (count > 0) {
+            moments.count = count;
+            moments.sum = sum;
+            moments.mean = sum / count;
+            moments.m2 = Math.max(0, sumOfSquares - sum * moments.mean);
+        }
+        return moments;
+    }
+
+    /**
+     * Accumulates a value.
+     *
+     * @param value the value
+     */
+    public void add(double value) {
+        count++;
+        sum += value;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+    }
+
+    /**
+     * Merges the moments of a disjoint partition of the sample into these.
+     *
+     * @param other the moments of the other partition
+     * @return these moments
+     */
+    public Moments merge(Moments other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            count = other.count;
+            sum = other.sum;
+            mean = other.mean;
+            m2 = other.m2;
+            return this;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        sum += other.sum;
+        count = total;
+        return this;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getMean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    /**
+     * Get the population variance of the sample.
+     *
+     * @return the variance, or NaN if the sample is empty
+     */
+    public double getVariance() {
+        return count > 0 ? m2 / count : Double.NaN;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, sum=%.1f, mean=%.3f, variance=%.3f", count, sum, getMean(), getVariance());
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.rbuck.dash.common;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed-rate schedule of intended start times for an open-loop driver.
+ * <p/>
+ * In a closed-loop driver a stalled operation holds back every operation
+ * queued behind it, so the time spent waiting never shows up in measured
+ * latency (coordinated omission). An open-loop schedule instead assigns each
+ * operation the time at which it should have started; latency is measured
+ * from that intended start, so queueing delay is accounted for.
+ * <p/>
+ * Each worker owns its own schedule; workers interleave by using a common
+ * origin, a per-worker offset, and a period equal to the worker count
+ * multiplied by the global inter-arrival interval. Schedules are not thread
+ * safe.
+ */
+public class OpenLoopSchedule {
+
+    private final long period;
+    private long next;
+
+    /**
+     * Creates a schedule.
+     *
+     * @param origin the first intended start time, in {@link System#nanoTime()} units
+     * @param period the interval between successive intended start times, in nanoseconds
+     */
+    public OpenLoopSchedule(long origin, long period) {
+        Preconditions.checkArgument(period > 0, "Schedule period must be greater than zero");
+        this.next = origin;
+        this.period = period;
+    }
+
+    /**
+     * Waits until the next intended start time, if not already past it, then
+     * advances the schedule. A worker that has fallen behind is not allowed to
+     * skip slots; it issues its backlog immediately.
+     *
+     * @return the intended start time, in {@link System#nanoTime()} units
+     */
+    public long next() {
+        final long intended = next;
+        next += period;
+        long delay;
+        while ((delay = intended - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(delay);
+        }
+        return intended;
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.rbuck.dash.common;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcomes of the operations of one tag.
+ * <p/>
+ * The latency of successful operations is recorded in the timer named by
+ * the tag, and that of failed operations in the {@code <tag>.failed} timer,
+ * so that errors, often either very fast or timing out, do not distort the
+ * latency of successful operations. Successes, retries and failures are
+ * metered as {@code <tag>.successes}, {@code <tag>.retries} and
+ * {@code <tag>.failures}, and failures are further metered by cause as
+ * {@code <tag>.failures.<code>}; see {@link #getFailureCode(Throwable)}.
+ */
+public final class OutcomeMeters {
+
+    /**
+     * The suffix of the timers of failed operations.
+     */
+    public static final String FAILED = "failed";
+
+    private final String tag;
+    private final MetricRegistry registry;
+    private final Timer succeeded;
+    private final Timer failed;
+    private final Meter successes;
+    private final Meter retries;
+    private final Meter failures;
+    private final ConcurrentMap<String, Meter> failuresByCode = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the meters of a tag.
+     *
+     * @param metricsService the service the meters are registered with
+     * @param tag            the tag
+     */
+    public OutcomeMeters(MetricsService metricsService, String tag) {
+        this.tag = tag;
+        this.registry = metricsService.getMetricRegistry();
+        this.succeeded = metricsService.timer(tag);
+        this.failed = metricsService.timer(MetricRegistry.name(tag, FAILED));
+        this.successes = registry.meter(MetricRegistry.name(tag, "successes"));
+        this.retries = registry.meter(MetricRegistry.name(tag, "retries"));
+        this.failures = registry.meter(MetricRegistry.name(tag, "failures"));
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * Records a successful operation.
+     *
+     * @param latency the latency in nanoseconds
+     * @param retries the count of retries the operation took
+     */
+    public void success(long latency, int retries) {
+        succeeded.update(latency, TimeUnit.NANOSECONDS);
+        successes.mark();
+        if (retries > 0) {
+            this.retries.mark(retries);
+        }
+    }
+
+    /**
+     * Records a failed operation.
+     *
+     * @param latency the latency in nanoseconds
+     * @param retries the count of retries the operation took
+     * @param cause   the cause of the failure
+     */
+    public void failure(long latency, int retries, Throwable cause) {
+        failed.update(latency, TimeUnit.NANOSECONDS);
+        failures.mark();
+        if (retries > 0) {
+            this.retries.mark(retries);
+        }
+        failuresByCode.computeIfAbsent(getFailureCode(cause),
+                code -> registry.meter(MetricRegistry.name(tag, "failures", code))).mark();
+    }
+
+    /**
+     * Get the code a failure is metered by: the SQLState and vendor code of
+     * the first SQL exception among its causes, as {@code <state>.<vendor>},
+     * otherwise the simple name of the exception class.
+     *
+     * @param cause the cause of the failure
+     * @return the failure code
+     */
+    public static String getFailureCode(Throwable cause) {
+        for (Throwable e = cause; e != null; e = e.getCause()) {
+            if (e instanceof SQLException) {
+                SQLException sqlException = (SQLException) e;
+                String state = sqlException.getSQLState();
+                return (state != null ? state : "unknown") + "." + sqlException.getErrorCode();
+            }
+            if (e.getCause() == e) {
+                break;
+            }
+        }
+        return cause.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.rbuck.dash.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.rbuck.dash.common.PropertiesHelper.getDoubleProperty;
+import static com.github.rbuck.dash.common.PropertiesHelper.getLongProperty;
+import static com.github.rbuck.dash.common.PropertiesHelper.getStringProperty;
+
+/**
+ * The schedule of phases a run goes through, and the load driven in each.
+ * <p/>
+ * A run warms up, ramps up, holds a steady state, then cools down; each
+ * phase lasts as many seconds as configured, and phases with no duration
+ * are skipped. The steady state lasts {@code dash.driver.duration}, so a
+ * run configured with nothing else is a single steady state as before.
+ * <p/>
+ * Load is expressed as a fraction of the full load. The ramp up climbs
+ * linearly from an initial load to the full load, and the cool down falls
+ * linearly back; the warm up holds the initial load, so that caches warm
+ * under the load the ramp starts from, or the full load if there is no
+ * ramp. Whether load is the rate of operations or the count of active
+ * drivers is configurable.
+ */
+public class PhaseSchedule {
+
+    private static final String PHASE_PREFIX = "dash.driver.phases.";
+    private static final String DRIVER_DURATION = "dash.driver.duration";
+    private static final String RAMP_MODE = "dash.driver.phases.ramp";
+    private static final String RAMP_FROM = "dash.driver.phases.ramp.from";
+
+    public enum Phase {
+        WARMUP,
+        RAMPUP,
+        STEADY,
+        COOLDOWN;
+
+        /**
+         * Get the name of the phase as used in properties and file names.
+         *
+         * @return the lower case phase name
+         */
+        public String getName() {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * What the load fraction applies to.
+     */
+    public enum Ramp {
+        RATE,
+        THREADS
+    }
+
+    private final long[] durations = new long[Phase.values().length];
+    private final Ramp ramp;
+    private final double from;
+
+    public PhaseSchedule(Properties properties) {
+        for (Phase phase : Phase.values()) {
+            String property = phase == Phase.STEADY ? DRIVER_DURATION : PHASE_PREFIX + phase.getName();
+            long duration = getLongProperty(properties, property, phase == Phase.STEADY ? 30 : 0);
+            Preconditions.checkArgument(duration >= 0, "The " + property + " property (" +
+                    duration + ") is not greater than or equal to zero; please fix your property declaration.");
+            durations[phase.ordinal()] = duration;
+        }
+        String mode = getStringProperty(properties, RAMP_MODE, Ramp.RATE.name());
+        try {
+            ramp = Ramp.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("The " + RAMP_MODE + " property (" +
+                    mode + ") is not one of rate or threads; please fix your property declaration.");
+        }
+        from = getDoubleProperty(properties, RAMP_FROM, 0.1);
+        Preconditions.checkArgument(from > 0 && from <= 1, "The " + RAMP_FROM + " property (" +
+                from + ") is not greater than zero and at most one; please fix your property declaration.");
+    }
+
+    /**
+     * Get the phases of the run, in order, omitting those with no duration.
+     *
+     * @return the phases
+     */
+    public List<Phase> getPhases() {
+        List<Phase> phases = new ArrayList<>();
+        for (Phase phase : Phase.values()) {
+            if (getDuration(phase) > 0) {
+                phases.add(phase);
+            }
+        }
+        return phases;
+    }
+
+    /**
+     * Get the duration of a phase.
+     *
+     * @param phase the phase
+     * @return the duration in seconds
+     */
+    public long getDuration(Phase phase) {
+        return durations[phase.ordinal()];
+    }
+
+    /**
+     * Get what the load fraction applies to.
+     *
+     * @return the ramp mode
+     */
+    public Ramp getRamp() {
+        return ramp;
+    }
+
+    /**
+     * Get the load to drive at a point within a phase.
+     *
+     * @param phase   the phase
+     * @param elapsed the time since the phase began, in nanoseconds
+     * @return the load, as a fraction of the full load
+     */
+    public double getLoad(Phase phase, long elapsed) {
+        switch (phase) {
+            case WARMUP:
+                return getDuration(Phase.RAMPUP) > 0 ? from : 1.0;
+            case RAMPUP:
+                return from + (1.0 - from) * getProgress(phase, elapsed);
+            case COOLDOWN:
+                return 1.0 - (1.0 - from) * getProgress(phase, elapsed);
+            default:
+                return 1.0;
+        }
+    }
+
+    private double getProgress(Phase phase, long elapsed) {
+        long duration = TimeUnit.SECONDS.toNanos(getDuration(phase));
+        return duration > 0 ? Math.min(1.0, Math.max(0.0, (double) elapsed / duration)) : 1.0;
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.rbuck.dash.common;
+
+import com.github.rbuck.retry.SqlTransactionContext;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+
+/**
+ * A transaction context that pins one long-lived connection.
+ * <p/>
+ * The connection is borrowed from the underlying context upon first use and
+ * is then handed out for every subsequent transaction; closing it is a no-op,
+ * so retry policies and services may close it as they would a pooled one.
+ * Should the connection fail with a connection-class error, it is discarded
+ * and a new one is borrowed the next time one is requested. Per-operation
+ * cost is thereby only the SQL, without any pool bookkeeping or validation.
+ * <p/>
+ * A pinned context must only be used by one thread at a time.
+ */
+public class PinnedConnectionContext implements SqlTransactionContext, AutoCloseable {
+
+    private final SqlTransactionContext source;
+
+    private Connection connection;
+    private Connection pinned;
+    private boolean broken;
+
+    public PinnedConnectionContext(SqlTransactionContext source) {
+        this.source = source;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (broken || (connection != null && connection.isClosed())) {
+            close();
+        }
+        if (connection == null) {
+            connection = source.getConnection();
+            pinned = pin(connection);
+        }
+        return pinned;
+    }
+
+    @Override
+    public void close() {
+        broken = false;
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // ignore, it is being discarded
+            }
+            connection = null;
+            pinned = null;
+        }
+    }
+
+    private Connection pin(final Connection connection) {
+        return (Connection) Proxy.newProxyInstance(PinnedConnectionContext.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if ("close".equals(method.getName())) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        if (isConnectionFailure(e.getCause())) {
+                            broken = true;
+                        }
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * Determine if an exception indicates the connection itself is no longer
+     * usable; SQLState class 08 is connection exception.
+     */
+    private static boolean isConnectionFailure(Throwable e) {
+        if (e instanceof SQLNonTransientConnectionException || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        if (e instanceof SQLException) {
+            String state = ((SQLException) e).getSQLState();
+            return state != null && state.startsWith("08");
+        }
+        return false;
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.rbuck.dash.common;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admits operations as a Poisson process at the limit rate; gaps between
+ * arrivals are exponentially distributed, so operations cluster and thin
+ * out at random as independent clients would, rather than arriving evenly.
+ */
+public class PoissonLimiter extends ScheduledLimiter {
+
+    private final double meanGap;
+
+    public PoissonLimiter() {
+        this(ConstantLimiter.getLimitRate());
+    }
+
+    PoissonLimiter(double rate) {
+        Preconditions.checkArgument(rate > 0, "Poisson rate must be greater than zero");
+        this.meanGap = TimeUnit.SECONDS.toNanos(1) / rate;
+    }
+
+    @Override
+    protected long gap(long elapsed) {
+        return (long) (-Math.log(1.0 - ThreadLocalRandom.current().nextDouble()) * meanGap);
+    }
+}
@@ -3,6 +3,9 @@ package com.github.rbuck.dash.common;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.Properties;
 
 /**
@@ -32,4 +35,12 @@ public class Resources {
         return builder;
     }
 
+    public static Reader openResource(Class<?> clazz, String path) throws IOException {
+        InputStream in = clazz.getResourceAsStream(path);
+        if (in == null) {
+            throw new FileNotFoundException("Classpath resource not found: " + path);
+        }
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
 }
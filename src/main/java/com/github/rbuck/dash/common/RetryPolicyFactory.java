@@ -0,0 +1,78 @@
+package com.github.rbuck.dash.common;
+
+import com.github.rbuck.retry.FixedInterval;
+import com.github.rbuck.retry.SqlRetryPolicy;
+import com.github.rbuck.retry.SqlTransactionContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the SQL retry policies used by services.
+ * <p/>
+ * Services use a shared policy for one-off work such as loading the data
+ * model, and a per-context policy for their operations. By default both
+ * borrow a connection from the pool for every transaction; when connection
+ * pinning is enabled each context policy instead owns one long-lived
+ * connection, see {@link PinnedConnectionContext}. Attempts are counted so
+ * that services may account for retries, see
+ * {@link CountingTransactionContext}.
+ */
+public class RetryPolicyFactory implements AutoCloseable {
+
+    private final SqlTransactionContext source;
+    private final boolean pinned;
+    private final List<PinnedConnectionContext> contexts = new ArrayList<>();
+
+    /**
+     * Creates a factory.
+     *
+     * @param source the pool connections are borrowed from
+     * @param pinned whether each context policy pins its own connection
+     */
+    public RetryPolicyFactory(SqlTransactionContext source, boolean pinned) {
+        this.source = source;
+        this.pinned = pinned;
+    }
+
+    /**
+     * Creates a policy that borrows a connection per transaction.
+     *
+     * @param <V> the transaction result type
+     * @return the retry policy
+     */
+    public <V> SqlRetryPolicy<V> newPooledPolicy() {
+        return new SqlRetryPolicy<>(new FixedInterval(1, 100), new CountingTransactionContext(source));
+    }
+
+    /**
+     * Creates a policy for one service context; it pins a connection when
+     * pinning is enabled, otherwise it borrows one per transaction.
+     *
+     * @param <V> the transaction result type
+     * @return the retry policy
+     */
+    public <V> SqlRetryPolicy<V> newContextPolicy() {
+        if (!pinned) {
+            return newPooledPolicy();
+        }
+        PinnedConnectionContext context = new PinnedConnectionContext(source);
+        synchronized (contexts) {
+            contexts.add(context);
+        }
+        return new SqlRetryPolicy<>(new FixedInterval(1, 100), new CountingTransactionContext(context));
+    }
+
+    /**
+     * Returns all pinned connections to the pool.
+     */
+    @Override
+    public void close() {
+        synchronized (contexts) {
+            for (PinnedConnectionContext context : contexts) {
+                context.close();
+            }
+            contexts.clear();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.rbuck.dash.common;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logs warnings at a limited rate, so that a storm of failures does not
+ * serialize all workers on the log; warnings beyond the rate are counted
+ * and dropped, and the count dropped is noted in the next warning logged.
+ * Warnings are only formatted when logged, so dropping one costs a read of
+ * the clock and a counter increment.
+ */
+public final class SampledLogger {
+
+    private final Logger logger;
+    private final long periodNanos;
+    private final AtomicLong next = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Creates a sampled logger.
+     *
+     * @param logger    the logger warnings are logged to
+     * @param perSecond the most warnings logged per second; zero logs none
+     */
+    public SampledLogger(Logger logger, double perSecond) {
+        Preconditions.checkArgument(perSecond >= 0, "The dash.errors.log.rate property (" +
+                perSecond + ") is less than zero; please fix your property declaration.");
+        this.logger = logger;
+        this.periodNanos = perSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / perSecond) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Logs a warning of a failure, unless the rate has been reached.
+     *
+     * @param what  what failed, e.g. the tag of the operation
+     * @param cause the cause of the failure
+     */
+    public void warn(String what, Throwable cause) {
+        if (!permit()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        long count = dropped.getAndSet(0);
+        logger.warn(what + " failed [" + OutcomeMeters.getFailureCode(cause) + "]: " + Exceptions.toStringAllCauses(cause) +
+                (count > 0 ? " (" + count + " more failures not logged)" : ""));
+    }
+
+    private boolean permit() {
+        if (periodNanos == Long.MAX_VALUE) {
+            return false;
+        }
+        final long now = System.nanoTime();
+        final long due = next.get();
+        return (due == Long.MIN_VALUE || now - due >= 0) && next.compareAndSet(due, now + periodNanos);
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.rbuck.dash.common;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * The volume of results the operations of one tag consume.
+ * <p/>
+ * The rows and bytes each operation fetched are recorded in the
+ * {@code <tag>.rows} and {@code <tag>.bytes} histograms, so that the latency
+ * of scans may be read against the volume they fetched. Bytes are counted as
+ * the values are read, eight per number or timestamp and one per character
+ * of text, so they approximate what was transferred rather than measure it.
+ */
+public final class ScanMeters {
+
+    private final Histogram rows;
+    private final Histogram bytes;
+
+    /**
+     * Creates the meters of a tag.
+     *
+     * @param metricsService the service the meters are registered with
+     * @param tag            the tag
+     */
+    public ScanMeters(MetricsService metricsService, String tag) {
+        MetricRegistry registry = metricsService.getMetricRegistry();
+        this.rows = registry.histogram(MetricRegistry.name(tag, "rows"));
+        this.bytes = registry.histogram(MetricRegistry.name(tag, "bytes"));
+    }
+
+    /**
+     * Records the volume an operation consumed.
+     *
+     * @param tally the tally of the operation
+     */
+    public void update(Tally tally) {
+        rows.update(tally.rows);
+        bytes.update(tally.bytes);
+    }
+
+    /**
+     * Tallies the rows and bytes an operation consumes; one per thread.
+     */
+    public static final class Tally {
+
+        private long rows;
+        private long bytes;
+
+        /**
+         * Resets the tally, at the start of each attempt of an operation so
+         * that retried attempts are not counted twice.
+         */
+        public void reset() {
+            rows = 0;
+            bytes = 0;
+        }
+
+        public void row() {
+            rows++;
+        }
+
+        public void rows(long count) {
+            rows += count;
+        }
+
+        public void bytes(long count) {
+            bytes += count;
+        }
+
+        public void text(String value) {
+            if (value != null) {
+                bytes += value.length();
+            }
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+}
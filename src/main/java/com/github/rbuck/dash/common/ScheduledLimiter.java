@@ -0,0 +1,77 @@
+package com.github.rbuck.dash.common;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.lang.System.getProperties;
+
+/**
+ * A limiter that admits operations at scheduled arrival times, shared by all
+ * drivers, where subclasses define the gap between successive arrivals.
+ * <p/>
+ * Each token consumed claims the next arrival on the schedule, lock free,
+ * then waits until its time comes. Drivers that fall behind the schedule may
+ * catch up, but by no more than the burst rate worth of operations at the
+ * limit rate, as with the token bucket of a constant limiter.
+ */
+public abstract class ScheduledLimiter implements Limiter {
+
+    private static final String MIX_RATES_BURST = "dash.driver.rates.burst";
+
+    private final long origin;
+    private final long maxLag;
+    private final AtomicLong next;
+
+    protected ScheduledLimiter() {
+        this.origin = System.nanoTime();
+        long limit = Math.max(1, ConstantLimiter.getLimitRate());
+        long burst = PropertiesHelper.getLongProperty(getProperties(), MIX_RATES_BURST, limit);
+        this.maxLag = TimeUnit.SECONDS.toNanos(1) * Math.max(1, burst) / limit;
+        this.next = new AtomicLong(origin);
+    }
+
+    /**
+     * Get the gap between an arrival and the next.
+     *
+     * @param elapsed the time of the arrival since the limiter was created, in nanoseconds
+     * @return the gap in nanoseconds
+     */
+    protected abstract long gap(long elapsed);
+
+    /**
+     * Get the time since the limiter was created.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    protected final long getElapsed() {
+        return System.nanoTime() - origin;
+    }
+
+    /**
+     * Claims the next arrival on the schedule.
+     *
+     * @return the arrival time, in {@link System#nanoTime()} units
+     */
+    public long acquire() {
+        final long now = System.nanoTime();
+        long arrival;
+        long current;
+        do {
+            current = next.get();
+            arrival = Math.max(current, now - maxLag);
+        } while (!next.compareAndSet(current, arrival + Math.max(1, gap(arrival - origin))));
+        return arrival;
+    }
+
+    @Override
+    public void consume(int tokens) {
+        for (int i = 0; i < tokens; i++) {
+            long arrival = acquire();
+            long delay;
+            while ((delay = arrival - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(delay);
+            }
+        }
+    }
+}
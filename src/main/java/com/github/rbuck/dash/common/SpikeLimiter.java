@@ -0,0 +1,80 @@
+package com.github.rbuck.dash.common;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.System.getProperties;
+
+/**
+ * Admits operations at the limit rate, but periodically spikes to a peak
+ * rate for a while, after which the rate decays exponentially back to the
+ * limit rate.
+ * <p/>
+ * The first spike starts one period after the limiter is created. A decay
+ * time of zero returns to the limit rate at once; otherwise it is the time
+ * constant of the decay, the time by which the excess over the limit rate
+ * falls to about a third.
+ */
+public class SpikeLimiter extends ScheduledLimiter {
+
+    private static final String SPIKE_RATE = "dash.driver.rates.spike.rate";
+    private static final String SPIKE_PERIOD = "dash.driver.rates.spike.period";
+    private static final String SPIKE_DURATION = "dash.driver.rates.spike.duration";
+    private static final String SPIKE_DECAY = "dash.driver.rates.spike.decay";
+
+    private final double baseRate;
+    private final double peakRate;
+    private final long period;
+    private final long duration;
+    private final long decay;
+
+    public SpikeLimiter() {
+        this(ConstantLimiter.getLimitRate(),
+                PropertiesHelper.getLongProperty(getProperties(), SPIKE_RATE, 5 * ConstantLimiter.getLimitRate()),
+                TimeUnit.SECONDS.toNanos(PropertiesHelper.getLongProperty(getProperties(), SPIKE_PERIOD, 60)),
+                TimeUnit.SECONDS.toNanos(PropertiesHelper.getLongProperty(getProperties(), SPIKE_DURATION, 5)),
+                TimeUnit.SECONDS.toNanos(PropertiesHelper.getLongProperty(getProperties(), SPIKE_DECAY, 0)));
+    }
+
+    SpikeLimiter(double baseRate, double peakRate, long period, long duration, long decay) {
+        Preconditions.checkArgument(baseRate > 0, "Spike base rate must be greater than zero");
+        Preconditions.checkArgument(peakRate > 0, "Spike peak rate must be greater than zero");
+        Preconditions.checkArgument(period > 0, "Spike period must be greater than zero");
+        Preconditions.checkArgument(duration >= 0 && duration <= period, "Spike duration must be between zero and the spike period");
+        Preconditions.checkArgument(decay >= 0, "Spike decay must not be negative");
+        this.baseRate = baseRate;
+        this.peakRate = peakRate;
+        this.period = period;
+        this.duration = duration;
+        this.decay = decay;
+    }
+
+    /**
+     * Get the rate at a point in time.
+     *
+     * @param elapsed the time since the limiter was created, in nanoseconds
+     * @return the rate in operations per second
+     */
+    double getRate(long elapsed) {
+        if (elapsed < period) {
+            return baseRate;
+        }
+        long phase = elapsed % period;
+        if (phase < duration) {
+            return peakRate;
+        }
+        if (decay == 0) {
+            return baseRate;
+        }
+        return baseRate + (peakRate - baseRate) * Math.exp(-(double) (phase - duration) / decay);
+    }
+
+    @Override
+    public double getTargetRate() {
+        return getRate(getElapsed());
+    }
+
+    @Override
+    protected long gap(long elapsed) {
+        return (long) (TimeUnit.SECONDS.toNanos(1) / getRate(elapsed));
+    }
+}
@@ -0,0 +1,377 @@
+package com.github.rbuck.dash.common;
+
+import com.github.rbuck.retry.SqlRetryPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.github.rbuck.dash.common.Preconditions.checkArgument;
+
+/**
+ * Runs SQL scripts, such as the install scripts of the data model, running
+ * independent statements in parallel on several connections.
+ * <p/>
+ * Statements are planned and run as they are split from the script: each
+ * depends on the statements before it that touch any of the same database
+ * objects, the objects being the tables, indexes, sequences and triggers
+ * the script has created or dropped so far, where an index or trigger also
+ * stands for the table it is declared on. So creating the indexes of one
+ * table waits on creating that table, whereas creating another table need
+ * not. Tables are dropped in script order, as scripts order them for their
+ * foreign keys. Statements that touch none of the objects, and those
+ * changing the schema as a whole, are barriers that wait on all before them
+ * and are waited on by all after them. Session statements, USE and SET, are
+ * barriers as well, and are also replayed before each later statement since
+ * later statements may run on other connections.
+ * <p/>
+ * Only the statements since the last barrier are held: once a barrier has
+ * run, or a window of statements has been read since, the runner waits for
+ * those read to complete and forgets them before reading further, so
+ * scripts of any size may be run in bounded memory.
+ * <p/>
+ * Each statement is run as its own transaction and retried by itself should
+ * it fail transiently, rather than replaying the whole script. The time
+ * taken by each statement is logged at debug level, and a summary of the
+ * run, with the slowest statements, at info level.
+ */
+public class SqlScriptRunner {
+
+    private static Logger logger = LoggerFactory.getLogger(SqlScriptRunner.class);
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_$]*");
+    private static final Pattern OBJECT_DECLARATION = Pattern.compile(
+            "^(CREATE|DROP)\\s+(?:UNIQUE\\s+)?(TABLE|INDEX|SEQUENCE|TRIGGER)\\s+(?:CASCADE\\s+)?" +
+                    "(?:IF\\s+(?:NOT\\s+)?EXISTS\\s+)?([A-Za-z_][A-Za-z0-9_$]*)(?:[\\s\\S]*?\\s(?:ON|FOR)\\s+([A-Za-z_][A-Za-z0-9_$]*))?",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern SCHEMA_DECLARATION = Pattern.compile(
+            "^(?:CREATE|DROP|ALTER)\\s+(?:SCHEMA|DATABASE)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SESSION_STATEMENT = Pattern.compile(
+            "^(?:USE|SET)\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final int SLOWEST_REPORTED = 3;
+    private static final int WINDOW = 1024;
+
+    /**
+     * A planned statement.
+     */
+    static final class Step {
+
+        final int index;
+        final String sql;
+        final boolean barrier;
+        final List<String> session;
+        final List<Step> dependencies = new ArrayList<>();
+        int phase;
+        volatile long nanos;
+
+        Step(int index, String sql, boolean barrier, List<String> session) {
+            this.index = index;
+            this.sql = sql;
+            this.barrier = barrier;
+            this.session = session;
+        }
+    }
+
+    private final RetryPolicyFactory retryPolicies;
+    private final int parallelism;
+
+    /**
+     * Creates a script runner.
+     *
+     * @param retryPolicies the factory of policies statements are run with
+     * @param parallelism   the count of statements run at once, each on its
+     *                      own connection
+     */
+    public SqlScriptRunner(RetryPolicyFactory retryPolicies, int parallelism) {
+        checkArgument(parallelism > 0, "The dash.db.install.parallelism property (" +
+                parallelism + ") is not greater than zero; please fix your property declaration.");
+        this.retryPolicies = retryPolicies;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Runs a script, returning once all statements have run.
+     *
+     * @param name   the script name, used in messages
+     * @param script the script to run; the caller closes it
+     * @throws IOException if the script could not be read
+     * @throws Exception   if a statement failed after retrying; statements
+     *                     depending on it, and those after it in the
+     *                     script not yet started, are not run
+     */
+    public void run(String name, Reader script) throws Exception {
+        final long begin = System.nanoTime();
+        final Planner planner = new Planner();
+        final Map<Step, CompletableFuture<Void>> window = new LinkedHashMap<>();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final PriorityQueue<Step> slowest = new PriorityQueue<>((a, b) -> Long.compare(a.nanos, b.nanos));
+
+        final AtomicInteger sequence = new AtomicInteger();
+        ExecutorService runners = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "dash-install-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            new SqlScriptSplitter().splitStatements(script, sql -> {
+                Step step = planner.plan(sql);
+                CompletableFuture<?>[] dependencies = new CompletableFuture<?>[step.dependencies.size()];
+                for (int i = 0; i < dependencies.length; i++) {
+                    dependencies[i] = window.get(step.dependencies.get(i));
+                }
+                CompletableFuture<Void> future = CompletableFuture.allOf(dependencies).thenRunAsync(() -> execute(step), runners);
+                future.whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+                window.put(step, future);
+                // a barrier waits on all before it, so once it completes, as
+                // once a full window does, what came before may be forgotten...
+                if (step.barrier || window.size() >= WINDOW || failure.get() != null) {
+                    drain(window, slowest);
+                    planner.flush();
+                }
+            });
+            drain(window, slowest);
+        } finally {
+            if (!window.isEmpty()) {
+                // reading failed, so wait out the statements already begun...
+                drainQuietly(window);
+            }
+            runners.shutdownNow();
+        }
+
+        logger.info(String.format("Ran %s: %d statements in %d phases on %d connections in %.1f sec",
+                name, planner.getCount(), planner.getPhases(), parallelism, (System.nanoTime() - begin) / 1e9));
+        List<Step> reported = new ArrayList<>(slowest);
+        reported.sort((a, b) -> Long.compare(b.nanos, a.nanos));
+        for (Step step : reported) {
+            logger.info(String.format("  %8.1f ms  %s", step.nanos / 1e6, summarize(step.sql)));
+        }
+    }
+
+    /**
+     * Waits for the steps of the window to complete, retaining the slowest,
+     * and clears the window; throws the first failure, in script order.
+     */
+    private static void drain(Map<Step, CompletableFuture<Void>> window, PriorityQueue<Step> slowest) throws Exception {
+        Throwable failure = null;
+        for (Map.Entry<Step, CompletableFuture<Void>> entry : window.entrySet()) {
+            Step step = entry.getKey();
+            try {
+                entry.getValue().join();
+                step.dependencies.clear();
+                slowest.add(step);
+                if (slowest.size() > SLOWEST_REPORTED) {
+                    slowest.poll();
+                }
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+        window.clear();
+        if (failure != null) {
+            throw failure instanceof Exception ? (Exception) failure : new ExecutionException(failure);
+        }
+    }
+
+    private static void drainQuietly(Map<Step, CompletableFuture<Void>> window) {
+        for (CompletableFuture<Void> future : window.values()) {
+            try {
+                future.join();
+            } catch (CompletionException | CancellationException e) {
+                // the first failure is the one reported
+            }
+        }
+        window.clear();
+    }
+
+    private void execute(Step step) {
+        SqlRetryPolicy<Boolean> retryPolicy = retryPolicies.newPooledPolicy();
+        try {
+            retryPolicy.action(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    for (String sql : step.session) {
+                        statement.execute(sql);
+                    }
+                    long begin = System.nanoTime();
+                    statement.execute(step.sql);
+                    step.nanos = System.nanoTime() - begin;
+                }
+                return true;
+            });
+        } catch (Exception e) {
+            throw new CompletionException(new SQLException("Failed to execute statement " + (step.index + 1) + ": " +
+                    summarize(step.sql), e));
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Phase %d, %.1f ms: %s", step.phase, step.nanos / 1e6, summarize(step.sql)));
+        }
+    }
+
+    /**
+     * Plans the statements of a script, in script order.
+     */
+    static List<Step> plan(List<String> statements) {
+        Planner planner = new Planner();
+        List<Step> steps = new ArrayList<>();
+        for (String sql : statements) {
+            steps.add(planner.plan(sql));
+        }
+        return steps;
+    }
+
+    /**
+     * Plans statements one at a time, in script order.
+     */
+    static final class Planner {
+
+        // which names refer to the objects declared so far, and the table
+        // each stands for; bounded by the size of the schema...
+        private final Map<String, String> objects = new HashMap<>();
+        private final Map<String, Step> lastTouched = new HashMap<>();
+        private final List<Step> sinceBarrier = new ArrayList<>();
+        private List<String> session = Collections.emptyList();
+        private Step barrier;
+        private Step lastDrop;
+        private int count;
+        private int phases;
+        private int flushedPhases;
+
+        /**
+         * Plans the next statement; it depends on the last before it
+         * touching any of the same objects, or on all since the last barrier.
+         */
+        Step plan(String sql) {
+            String stripped = stripComments(sql);
+            boolean isDrop = false;
+            Matcher m = OBJECT_DECLARATION.matcher(stripped);
+            if (m.find()) {
+                String kind = m.group(2).toUpperCase(Locale.ROOT);
+                String object = m.group(3).toLowerCase(Locale.ROOT);
+                if (kind.equals("TABLE")) {
+                    objects.put(object, object);
+                    isDrop = m.group(1).equalsIgnoreCase("DROP");
+                } else if (m.group(1).equalsIgnoreCase("CREATE")) {
+                    // dropped indexes and triggers that the script has not
+                    // created are unknown, so dropping them is a barrier
+                    String table = m.group(4) != null && !kind.equals("SEQUENCE") ? m.group(4).toLowerCase(Locale.ROOT) : object;
+                    objects.put(object, table);
+                }
+            }
+
+            Set<String> touched = new HashSet<>();
+            Matcher i = IDENTIFIER.matcher(stripped);
+            while (i.find()) {
+                String table = objects.get(i.group().toLowerCase(Locale.ROOT));
+                if (table != null) {
+                    touched.add(table);
+                }
+            }
+            boolean isSession = SESSION_STATEMENT.matcher(stripped).find();
+            boolean isBarrier = isSession || touched.isEmpty() || SCHEMA_DECLARATION.matcher(stripped).find();
+
+            Step step = new Step(count++, sql, isBarrier, session);
+            if (isBarrier) {
+                step.dependencies.addAll(sinceBarrier);
+                if (sinceBarrier.isEmpty() && barrier != null) {
+                    step.dependencies.add(barrier);
+                }
+                barrier = step;
+                sinceBarrier.clear();
+                lastTouched.clear();
+                lastDrop = null;
+            } else {
+                Set<Step> dependencies = new LinkedHashSet<>();
+                for (String table : touched) {
+                    Step last = lastTouched.put(table, step);
+                    if (last != null) {
+                        dependencies.add(last);
+                    }
+                }
+                if (isDrop) {
+                    // a table may only be dropped once those referring to it
+                    // are, which the script may not yet have declared...
+                    if (lastDrop != null) {
+                        dependencies.add(lastDrop);
+                    }
+                    lastDrop = step;
+                }
+                if (dependencies.isEmpty() && barrier != null) {
+                    dependencies.add(barrier);
+                }
+                step.dependencies.addAll(dependencies);
+                sinceBarrier.add(step);
+            }
+            step.phase = flushedPhases;
+            for (Step dependency : step.dependencies) {
+                step.phase = Math.max(step.phase, dependency.phase);
+            }
+            step.phase++;
+            phases = Math.max(phases, step.phase);
+
+            if (isSession) {
+                List<String> next = new ArrayList<>(session);
+                next.add(sql);
+                session = Collections.unmodifiableList(next);
+            }
+            return step;
+        }
+
+        /**
+         * Forgets the statements planned so far, once all have completed;
+         * those planned next depend on none of them.
+         */
+        void flush() {
+            flushedPhases = phases;
+            lastTouched.clear();
+            sinceBarrier.clear();
+            barrier = null;
+            lastDrop = null;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        int getPhases() {
+            return phases;
+        }
+    }
+
+    /**
+     * Strips the comments preceding a statement.
+     */
+    private static String stripComments(String sql) {
+        String stripped = sql.trim();
+        while (true) {
+            if (stripped.startsWith("--") || stripped.startsWith("//")) {
+                int end = stripped.indexOf('\n');
+                stripped = end < 0 ? "" : stripped.substring(end + 1).trim();
+            } else if (stripped.startsWith("/*")) {
+                int end = stripped.indexOf("*/");
+                stripped = end < 0 ? "" : stripped.substring(end + 2).trim();
+            } else {
+                return stripped;
+            }
+        }
+    }
+
+    private static String summarize(String sql) {
+        String line = stripComments(sql).split("\n", 2)[0];
+        return line.length() > 80 ? line.substring(0, 80) + "..." : line;
+    }
+}
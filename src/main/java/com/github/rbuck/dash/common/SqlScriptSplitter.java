@@ -1,13 +1,34 @@
 package com.github.rbuck.dash.common;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Splits SQL scripts into multiple statements.
+ * <p/>
+ * Scripts are read a character at a time and each statement is handed to a
+ * consumer as soon as its delimiter is read, so the time taken is linear in
+ * the length of the script, and only the statement being read is held in
+ * memory; scripts far larger than the heap may be split when read from a
+ * stream.
  */
 public class SqlScriptSplitter {
 
+    /**
+     * Accepts statements as they are split from a script.
+     *
+     * @param <E> the type of exception the consumer may throw
+     */
+    @FunctionalInterface
+    public interface StatementConsumer<E extends Exception> {
+
+        void accept(String statement) throws E;
+    }
+
     private static final int STATE_SQL = 0;
     private static final int STATE_SINGLE_LINE_COMMENT = 1;
     private static final int STATE_MULTI_LINE_COMMENT = 2;
@@ -18,26 +39,49 @@ public class SqlScriptSplitter {
     private static final int STATEMENT_GENERIC = 0;
     private static final int STATEMENT_SET_DELIMETER = 9;
 
+    private static final String DELIMITER = "DELIMITER";
+
+    private static final int EOF = -1;
+
     public List<String> splitStatements(String sql) {
-        // normalize end-of-line
-        sql = sql.replace("\r", "");
+        List<String> ret = new ArrayList<>();
+        try {
+            splitStatements(new StringReader(sql), ret::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return ret;
+    }
+
+    /**
+     * Splits a script into statements, passing each to the consumer in
+     * script order as soon as it has been read. Delimiters, trailing
+     * whitespace, and comments between statements are removed; a trailing
+     * statement lacking a delimiter is passed as well.
+     *
+     * @param reader   the script to split; the caller closes it
+     * @param consumer accepts each statement
+     * @param <E>      the type of exception the consumer may throw
+     * @throws IOException if the script could not be read
+     * @throws E           if the consumer fails, in which case splitting stops
+     */
+    public <E extends Exception> void splitStatements(Reader reader, StatementConsumer<E> consumer) throws IOException, E {
+        final Source source = new Source(reader);
 
         int state = STATE_SQL;
         int statement_state = STATEMENT_GENERIC;
 
-        String token = "";
-        StringBuilder atom = new StringBuilder();
-        String sqlStatement = "";
+        StringBuilder token = new StringBuilder();
+        StringBuilder sqlStatement = new StringBuilder();
         String current_delimiter = ";";
 
-        List<String> ret = new ArrayList<>();
-
         boolean inside_comment = false;
         boolean inside_literal = false;
 
-        for (int i = 0; i < sql.length(); i++) {
-            char ch = sql.charAt(i);
-            atom.append(ch);
+        int previous = EOF;
+        int current;
+        while ((current = source.read()) != EOF) {
+            char ch = (char) current;
 
             // if previous the character the end of comment switch state back to SQL
             if (state == STATE_MULTI_LINE_COMMENT_END) {
@@ -61,20 +105,20 @@ public class SqlScriptSplitter {
                     break;
 
                 case '-':
-                    if (i > 0 && state == STATE_SQL && sql.charAt(i - 1) == '-') {
+                    if (state == STATE_SQL && previous == '-') {
                         state = STATE_SINGLE_LINE_COMMENT;
                     }
                     break;
                 case '/':
-                    if (i < sql.length() - 1 && state == STATE_SQL) {
-                        char next = sql.charAt(i + 1);
+                    if (state == STATE_SQL) {
+                        int next = source.peek();
                         if (next == '/') {
                             state = STATE_SINGLE_LINE_COMMENT;
                         } else if (next == '*') {
                             state = STATE_MULTI_LINE_COMMENT;
                         }
                     }
-                    if (i > 0 && state == STATE_MULTI_LINE_COMMENT && sql.charAt(i - 1) == '*') {// end start multi-line
+                    if (state == STATE_MULTI_LINE_COMMENT && previous == '*') {// end start multi-line
                         state = STATE_MULTI_LINE_COMMENT_END;
                     }
 
@@ -83,80 +127,132 @@ public class SqlScriptSplitter {
                     if (state == STATE_SINGLE_LINE_COMMENT) {// end single line comment
                         state = STATE_SQL;
                     } else if (statement_state == STATEMENT_SET_DELIMETER) {
-                        current_delimiter = token;
+                        current_delimiter = token.toString();
                     }
                     break;
                 default:
                     if (!inside_comment && !inside_literal) {
                         if (!Character.isWhitespace(ch)) {
-                            token += ch;
+                            token.append(ch);
                         } else if (statement_state == STATEMENT_SET_DELIMETER) {
-                            current_delimiter = token;
+                            current_delimiter = token.toString();
                         }
                     }
                     break;
             }
 
-            sqlStatement += ch;
+            sqlStatement.append(ch);
+            previous = ch;
 
             inside_comment = state == STATE_SINGLE_LINE_COMMENT || state == STATE_MULTI_LINE_COMMENT
                     || state == STATE_MULTI_LINE_COMMENT_END;
             inside_literal = state == STATE_LITERAL_STRING || state == STATE_ESCAPED_NAME;
 
-            if (token.endsWith(current_delimiter) && state == STATE_SQL) {
+            boolean delimited = endsWith(token, current_delimiter);
+            if (delimited && state == STATE_SQL) {
 
                 if (statement_state != STATEMENT_SET_DELIMETER) {// Remove SET DELIMITER from statement
 
-                    if (sqlStatement.endsWith(current_delimiter)) {
+                    if (endsWith(sqlStatement, current_delimiter)) {
                         // Remove delimiter
-                        sqlStatement = sqlStatement.substring(0, sqlStatement.length() - current_delimiter.length());
+                        sqlStatement.setLength(sqlStatement.length() - current_delimiter.length());
                     }
 
-                    sqlStatement = trimWhitespace(sqlStatement);
-                    if (!sqlStatement.isEmpty()) {
-                        ret.add(sqlStatement);
-                    }
+                    emit(sqlStatement, consumer);
                 }
-                sqlStatement = "";
+                sqlStatement.setLength(0);
                 statement_state = STATEMENT_GENERIC;
             }
 
             if ((!inside_comment && !inside_literal)
-                    && (Character.isWhitespace(ch) || token.endsWith(current_delimiter))) {
+                    && (Character.isWhitespace(ch) || delimited)) {
                 statement_state = getStateFromToken(token, statement_state);
-                token = "";
-                atom = new StringBuilder();
+                token.setLength(0);
             }
 
-        }// end for
+        }// end while
 
         // Add Pending SQL
         if (state == STATE_SQL) {
-            sqlStatement = trimWhitespace(sqlStatement);
-            if (!sqlStatement.isEmpty()) {
-                ret.add(sqlStatement);
-            }
+            emit(sqlStatement, consumer);
         }
+    }
 
-        return ret;
+    private <E extends Exception> void emit(StringBuilder sqlStatement, StatementConsumer<E> consumer) throws E {
+        trimWhitespace(sqlStatement);
+        if (sqlStatement.length() > 0) {
+            consumer.accept(sqlStatement.toString());
+        }
     }
 
-    private int getStateFromToken(String token, int current_state) {
+    private int getStateFromToken(CharSequence token, int current_state) {
         int state = current_state;
-        if (token != null) {
-            if (token.compareToIgnoreCase("DELIMITER") == 0) {
-                state = STATEMENT_SET_DELIMETER;
-            } else {
-                state = current_state;
-            }
+        if (token.length() == DELIMITER.length() && DELIMITER.regionMatches(true, 0, token.toString(), 0, DELIMITER.length())) {
+            state = STATEMENT_SET_DELIMETER;
         }
         return state;
     }
 
-    private String trimWhitespace(String sqlStatement) {
-        while (sqlStatement.endsWith("\n") || sqlStatement.endsWith(" ")) {
-            sqlStatement = sqlStatement.substring(0, sqlStatement.length() - 1);
+    private static boolean endsWith(StringBuilder builder, String suffix) {
+        int offset = builder.length() - suffix.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (builder.charAt(offset + i) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void trimWhitespace(StringBuilder sqlStatement) {
+        int length = sqlStatement.length();
+        while (length > 0 && (sqlStatement.charAt(length - 1) == '\n' || sqlStatement.charAt(length - 1) == ' ')) {
+            length--;
+        }
+        sqlStatement.setLength(length);
+    }
+
+    /**
+     * Reads a script through a buffer with one character of lookahead,
+     * normalizing end-of-line by dropping carriage returns.
+     */
+    private static final class Source {
+
+        private final Reader reader;
+        private final char[] buffer = new char[8192];
+        private int position;
+        private int limit;
+
+        Source(Reader reader) {
+            this.reader = reader;
+        }
+
+        int read() throws IOException {
+            int c = peek();
+            if (c != EOF) {
+                position++;
+            }
+            return c;
+        }
+
+        int peek() throws IOException {
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return EOF;
+                    }
+                }
+                char c = buffer[position];
+                if (c != '\r') {
+                    return c;
+                }
+                position++;
+            }
         }
-        return sqlStatement;
     }
 }
@@ -0,0 +1,153 @@
+package com.github.rbuck.dash.common;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A client-side cache of prepared statements, keyed by physical connection
+ * and dialect statement key.
+ * <p/>
+ * Statements are prepared against the physical connection underlying any
+ * pool proxy so they survive the connection being returned to and borrowed
+ * again from the pool. Each connection holds at most a fixed number of
+ * statements, evicting (and closing) the least recently used. Statements
+ * handed out ignore {@code close()}, other than clearing their parameters,
+ * so callers may keep using try-with-resources. When the cache is disabled
+ * statements are prepared and closed per use, as without a cache.
+ * <p/>
+ * A connection must only be used by one thread at a time, as required by
+ * the pools anyway; the connection map itself is thread safe and holds its
+ * connections weakly, so statements of connections the pool has discarded
+ * are released.
+ */
+public class StatementCache {
+
+    private final Dialect dialect;
+    private final boolean enabled;
+    private final int capacity;
+    private final Meter hits;
+    private final Meter misses;
+
+    private final Cache<Connection, Statements> connections = CacheBuilder.newBuilder().weakKeys().build();
+
+    /**
+     * Creates a statement cache.
+     *
+     * @param dialect        the dialect to look statement keys up in
+     * @param enabled        whether statements are cached, or prepared per use
+     * @param capacity       the maximum count of statements cached per connection
+     * @param metricRegistry the registry in which hit and miss meters are registered
+     */
+    public StatementCache(Dialect dialect, boolean enabled, int capacity, MetricRegistry metricRegistry) {
+        Preconditions.checkArgument(capacity > 0, "Statement cache capacity must be greater than zero");
+        this.dialect = dialect;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.hits = metricRegistry.meter("statement.cache.hits");
+        this.misses = metricRegistry.meter("statement.cache.misses");
+    }
+
+    /**
+     * Gets a prepared statement for the designated dialect statement key.
+     *
+     * @param connection the connection to prepare the statement on
+     * @param key        the dialect statement key
+     * @return the prepared statement
+     * @throws SQLException if the statement could not be prepared
+     */
+    public PreparedStatement prepare(Connection connection, String key) throws SQLException {
+        if (!enabled) {
+            return connection.prepareStatement(dialect.getProperty(key));
+        }
+        final Connection physical = unwrap(connection);
+        final Statements statements;
+        try {
+            statements = connections.get(physical, Statements::new);
+        } catch (ExecutionException e) {
+            throw new Error(e.getCause());
+        }
+        synchronized (statements) {
+            PreparedStatement statement = statements.get(key);
+            if (statement != null && !statement.isClosed()) {
+                hits.mark();
+                return statement;
+            }
+            misses.mark();
+            statement = retain(physical.prepareStatement(dialect.getProperty(key)));
+            statements.put(key, statement);
+            return statement;
+        }
+    }
+
+    private static Connection unwrap(Connection connection) {
+        try {
+            return connection.isWrapperFor(Connection.class) ? connection.unwrap(Connection.class) : connection;
+        } catch (SQLException e) {
+            return connection;
+        }
+    }
+
+    /**
+     * Wraps a statement so that closing it merely clears its parameters.
+     */
+    private static PreparedStatement retain(final PreparedStatement statement) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "close":
+                    if (!statement.isClosed()) {
+                        statement.clearParameters();
+                    }
+                    return null;
+                case "unwrap":
+                    if (args[0] == PreparedStatement.class) {
+                        return statement;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, handler);
+    }
+
+    /**
+     * The statements of one connection, in least recently used order.
+     */
+    private class Statements extends LinkedHashMap<String, PreparedStatement> {
+
+        Statements() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() > capacity) {
+                try {
+                    eldest.getValue().unwrap(PreparedStatement.class).close();
+                } catch (SQLException e) {
+                    // ignore
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.github.rbuck.dash.common;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.lang.System.getProperties;
+
+/**
+ * A limiter for very high rates that divides the limit rate into stripes,
+ * each with its own schedule, so drivers do not contend on one bucket.
+ * <p/>
+ * Each driver thread is assigned a stripe, round robin, upon first use; with
+ * as many stripes as drivers no schedule is shared. Drivers wait for their
+ * next arrival by parking until it is due rather than by yielding. Drivers
+ * rarely keep pace evenly, so stripes are periodically rebalanced: those
+ * that did not use their share are trimmed to what they achieved plus some
+ * headroom, and the rest of the limit rate is split among those whose
+ * drivers had to wait. As long as drivers can keep up, the achieved rate is
+ * within a percent or so of the limit rate over each rebalance interval.
+ */
+public class StripedLimiter implements Limiter, AutoCloseable {
+
+    private static final String MIX_RATES_BURST = "dash.driver.rates.burst";
+    private static final String STRIPES_REBALANCE = "dash.driver.rates.rebalance";
+
+    private static final double HEADROOM = 1.25;
+    private static final double MIN_SHARE = 0.05;
+
+    private final double rate;
+    private final Stripe[] stripes;
+    private final long maxLag;
+    private final AtomicInteger assignments = new AtomicInteger();
+    private final ThreadLocal<Stripe> stripe = ThreadLocal.withInitial(this::assign);
+    private final ScheduledExecutorService rebalancer;
+
+    private long lastRebalance;
+
+    public StripedLimiter(int stripes) {
+        this(ConstantLimiter.getLimitRate(), stripes,
+                PropertiesHelper.getLongProperty(getProperties(), STRIPES_REBALANCE, 1000));
+    }
+
+    StripedLimiter(double rate, int stripes, long rebalanceMillis) {
+        Preconditions.checkArgument(rate > 0, "Striped limiter rate must be greater than zero");
+        Preconditions.checkArgument(stripes > 0, "Striped limiter stripes must be greater than zero");
+        Preconditions.checkArgument(rebalanceMillis > 0, "Striped limiter rebalance interval must be greater than zero");
+        this.rate = rate;
+        this.stripes = new Stripe[stripes];
+        long now = System.nanoTime();
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe(now, rate / stripes);
+        }
+        long burst = PropertiesHelper.getLongProperty(getProperties(), MIX_RATES_BURST, (long) rate);
+        this.maxLag = (long) (TimeUnit.SECONDS.toNanos(1) * Math.max(1, burst) / rate);
+        this.lastRebalance = now;
+        this.rebalancer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dash-limiter-rebalancer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rebalancer.scheduleAtFixedRate(this::rebalance, rebalanceMillis, rebalanceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private Stripe assign() {
+        return stripes[(assignments.getAndIncrement() & Integer.MAX_VALUE) % stripes.length];
+    }
+
+    @Override
+    public void consume(int tokens) {
+        final Stripe current = stripe.get();
+        for (int i = 0; i < tokens; i++) {
+            long arrival = current.acquire(maxLag);
+            long delay;
+            while ((delay = arrival - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(delay);
+            }
+        }
+    }
+
+    @Override
+    public double getTargetRate() {
+        return rate;
+    }
+
+    /**
+     * Redistributes the limit rate among stripes according to how much of
+     * their share each used over the last interval.
+     */
+    synchronized void rebalance() {
+        final long now = System.nanoTime();
+        final double seconds = (now - lastRebalance) / 1e9;
+        lastRebalance = now;
+        if (seconds <= 0) {
+            return;
+        }
+        final double fair = rate / stripes.length;
+        double allocated = 0;
+        int throttled = 0;
+        double[] shares = new double[stripes.length];
+        boolean[] waited = new boolean[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe s = stripes[i];
+            long issued = s.issued.getAndSet(0);
+            waited[i] = s.throttled.getAndSet(0) > 0;
+            if (waited[i]) {
+                throttled++;
+            } else {
+                shares[i] = Math.min(s.share, Math.max(issued / seconds * HEADROOM, fair * MIN_SHARE));
+                allocated += shares[i];
+            }
+        }
+        for (int i = 0; i < stripes.length; i++) {
+            double share = throttled == 0 ? fair : waited[i] ? (rate - allocated) / throttled : shares[i];
+            stripes[i].setShare(share);
+        }
+    }
+
+    @Override
+    public void close() {
+        rebalancer.shutdownNow();
+    }
+
+    /**
+     * One share of the limit rate, and its schedule of arrivals.
+     */
+    private static final class Stripe {
+
+        final AtomicLong next;
+        final AtomicLong issued = new AtomicLong();
+        final AtomicLong throttled = new AtomicLong();
+
+        volatile double share;
+        volatile long gap;
+
+        Stripe(long origin, double share) {
+            this.next = new AtomicLong(origin);
+            setShare(share);
+        }
+
+        void setShare(double share) {
+            this.share = share;
+            this.gap = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / share));
+        }
+
+        long acquire(long maxLag) {
+            final long now = System.nanoTime();
+            long arrival;
+            long current;
+            do {
+                current = next.get();
+                arrival = Math.max(current, now - maxLag);
+            } while (!next.compareAndSet(current, arrival + gap));
+            issued.incrementAndGet();
+            if (arrival > now) {
+                throttled.incrementAndGet();
+            }
+            return arrival;
+        }
+    }
+}
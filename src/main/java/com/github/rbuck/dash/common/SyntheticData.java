@@ -1,31 +1,118 @@
 package com.github.rbuck.dash.common;
 
-import java.util.Random;
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Basic utilities to synthesize data.
+ * <p/>
+ * Generators sit on the hot path of every write, so they draw from the
+ * calling thread's {@link ThreadLocalRandom} rather than a shared generator,
+ * format into a reusable per-thread buffer, and allocate only the resulting
+ * string. Nothing here is suitable for cryptographic use.
  */
 public class SyntheticData {
 
-    private static final Random random;
+    private static final char[] ALPHABET = "abcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
 
-    static {
-        random = new Random();
+    private static final ThreadLocal<char[]> buffers = ThreadLocal.withInitial(() -> new char[64]);
+
+    private static char[] buffer(int length) {
+        char[] buffer = buffers.get();
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+            buffers.set(buffer);
+        }
+        return buffer;
     }
 
+    /**
+     * Generates a random lower-case alphabetic string.
+     *
+     * @param length the length of the string
+     * @return the random string
+     */
     public static String genRandString(int length) {
-        char[] chars = "abcdefghijklmnopqrstuvwxyz".toCharArray();
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < length; i++) {
-            char c = chars[random.nextInt(chars.length)];
-            sb.append(c);
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final char[] buffer = buffer(length);
+        int i = 0;
+        while (i < length) {
+            // two characters per draw; scaling 32 random bits by 26 is unbiased to within 2^-27
+            long bits = random.nextLong();
+            buffer[i++] = ALPHABET[(int) (((bits & 0xFFFFFFFFL) * ALPHABET.length) >>> 32)];
+            if (i < length) {
+                buffer[i++] = ALPHABET[(int) (((bits >>> 32) * ALPHABET.length) >>> 32)];
+            }
         }
-        return sb.toString();
+        return new String(buffer, 0, length);
     }
 
+    /**
+     * Generates a random version 4 UUID string. Unlike
+     * {@link java.util.UUID#randomUUID()} it does not use a secure random
+     * source, and formats directly without intermediate objects.
+     *
+     * @return the random UUID string
+     */
     public static String genRandUuid() {
-        return "" + UUID.randomUUID();
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final long msb = (random.nextLong() & ~0xF000L) | 0x4000L; // version 4
+        final long lsb = (random.nextLong() & ~(0xC000000000000000L)) | 0x8000000000000000L; // IETF variant
+        final char[] buffer = buffer(36);
+        hex(buffer, 0, msb >>> 32, 8);
+        buffer[8] = '-';
+        hex(buffer, 9, msb >>> 16, 4);
+        buffer[13] = '-';
+        hex(buffer, 14, msb, 4);
+        buffer[18] = '-';
+        hex(buffer, 19, lsb >>> 48, 4);
+        buffer[23] = '-';
+        hex(buffer, 24, lsb, 12);
+        return new String(buffer, 0, 36);
+    }
+
+    private static void hex(char[] buffer, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    /**
+     * Creates a pool of precomputed random strings, for values that need
+     * not be unique such as names and descriptions.
+     *
+     * @param size   the count of strings in the pool
+     * @param length the length of each string
+     * @return the string pool
+     */
+    public static StringPool newStringPool(int size, int length) {
+        return new StringPool(size, length);
     }
 
+    /**
+     * A fixed pool of random strings drawn from at random; drawing neither
+     * allocates nor contends.
+     */
+    public static final class StringPool {
+
+        private final String[] strings;
+
+        private StringPool(int size, int length) {
+            Preconditions.checkArgument(size > 0, "String pool size must be greater than zero");
+            strings = new String[size];
+            for (int i = 0; i < size; i++) {
+                strings[i] = genRandString(length);
+            }
+        }
+
+        /**
+         * Gets a random string from the pool.
+         *
+         * @return a pooled string
+         */
+        public String next() {
+            return strings[ThreadLocalRandom.current().nextInt(strings.length)];
+        }
+    }
 }
@@ -198,7 +198,7 @@ public class TimerConsoleReporter extends ScheduledReporter {
         writer.format(locale, "%-12s%-12d%-12d%-9.2f%-9.2f%-9.2f%-9.2f%-9.2f%-9.2f%-9.2f%-9.2f%-9.2f%-9.2f%n",
                 name,
                 timer.getCount(),
-                (long) convertRate(timer.getMeanRate()),
+                (long) convertRate(getRate(timer, snapshot)),
                 convertDuration(snapshot.getMin()),
                 convertDuration(snapshot.getMax()),
                 convertDuration(snapshot.getMean()),
@@ -212,6 +212,14 @@ public class TimerConsoleReporter extends ScheduledReporter {
         output.append(stringWriter.toString());
     }
 
+    /**
+     * Interval snapshots carry their own throughput; otherwise fall back to
+     * the mean rate since the timer was created.
+     */
+    private double getRate(Timer timer, Snapshot snapshot) {
+        return snapshot instanceof HdrSnapshot ? ((HdrSnapshot) snapshot).getRate() : timer.getMeanRate();
+    }
+
     private void printWithBanner(String s, char c) {
         output.print(s);
         output.print(' ');
@@ -0,0 +1,40 @@
+package com.github.rbuck.dash.common.distributions;
+
+import com.github.rbuck.dash.common.Preconditions;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses keys with an exponentially decaying popularity, the oldest key
+ * being the most popular; a percentile of accesses fall within a fraction
+ * of the oldest keys.
+ */
+public class ExponentialDistribution implements KeyDistribution {
+
+    private final double percentile;
+    private final double fraction;
+
+    /**
+     * Creates an exponential distribution.
+     *
+     * @param percentile the percentage of accesses falling within the fraction
+     * @param fraction   the fraction of oldest keys accessed by the percentile
+     */
+    public ExponentialDistribution(double percentile, double fraction) {
+        Preconditions.checkArgument(percentile > 0 && percentile < 100, "Exponential percentile must be between zero and one hundred exclusive");
+        Preconditions.checkArgument(fraction > 0 && fraction <= 1, "Exponential fraction must be between zero exclusive and one");
+        this.percentile = percentile;
+        this.fraction = fraction;
+    }
+
+    @Override
+    public long next(long count) {
+        double gamma = -Math.log(1.0 - percentile / 100.0) / (fraction * count);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long index;
+        do {
+            index = (long) (-Math.log(1.0 - random.nextDouble()) / gamma);
+        } while (index >= count);
+        return index;
+    }
+}
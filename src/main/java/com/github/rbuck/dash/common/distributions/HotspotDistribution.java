@@ -0,0 +1,39 @@
+package com.github.rbuck.dash.common.distributions;
+
+import com.github.rbuck.dash.common.Preconditions;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses keys from a hot set, the oldest fraction of keys, for a fraction
+ * of accesses, and from the remaining cold keys otherwise; keys within each
+ * set are chosen uniformly.
+ */
+public class HotspotDistribution implements KeyDistribution {
+
+    private final double hotSetFraction;
+    private final double hotOpsFraction;
+
+    /**
+     * Creates a hotspot distribution.
+     *
+     * @param hotSetFraction the fraction of keys that are hot
+     * @param hotOpsFraction the fraction of accesses to hot keys
+     */
+    public HotspotDistribution(double hotSetFraction, double hotOpsFraction) {
+        Preconditions.checkArgument(hotSetFraction >= 0 && hotSetFraction <= 1, "Hotspot set fraction must be between zero and one");
+        Preconditions.checkArgument(hotOpsFraction >= 0 && hotOpsFraction <= 1, "Hotspot ops fraction must be between zero and one");
+        this.hotSetFraction = hotSetFraction;
+        this.hotOpsFraction = hotOpsFraction;
+    }
+
+    @Override
+    public long next(long count) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long hot = Math.max(1, (long) (count * hotSetFraction));
+        if (hot >= count || random.nextDouble() < hotOpsFraction) {
+            return random.nextLong(Math.min(hot, count));
+        }
+        return hot + random.nextLong(count - hot);
+    }
+}
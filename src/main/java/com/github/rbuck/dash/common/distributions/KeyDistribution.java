@@ -0,0 +1,19 @@
+package com.github.rbuck.dash.common.distributions;
+
+/**
+ * Chooses which of a set of keys to access.
+ * <p/>
+ * Keys are identified by their index in order of creation, from zero for
+ * the oldest; the count of keys may grow between calls. Implementations are
+ * thread safe, and draw from the calling thread's random generator.
+ */
+public interface KeyDistribution {
+
+    /**
+     * Choose a key.
+     *
+     * @param count the count of keys, greater than zero
+     * @return the index of the chosen key, from zero inclusive to count exclusive
+     */
+    long next(long count);
+}
@@ -0,0 +1,69 @@
+package com.github.rbuck.dash.common.distributions;
+
+import java.util.Properties;
+
+import static com.github.rbuck.dash.common.PropertiesHelper.getDoubleProperty;
+
+/**
+ * Creates key distributions from properties.
+ * <p/>
+ * The distribution is named by the dash.workload.distribution property, and
+ * may be overridden per operation tag with
+ * dash.workload.distribution.&lt;tag&gt;; the parameters of each kind of
+ * distribution are shared by all operations.
+ */
+public class KeyDistributions {
+
+    public static final String DISTRIBUTION = "dash.workload.distribution";
+
+    private KeyDistributions() {
+    }
+
+    /**
+     * Creates the distribution of an operation.
+     *
+     * @param properties the workload properties
+     * @param tag        the operation tag
+     * @return the key distribution
+     */
+    public static KeyDistribution forTag(Properties properties, String tag) {
+        String property = properties.getProperty(DISTRIBUTION + "." + tag) != null ? DISTRIBUTION + "." + tag : DISTRIBUTION;
+        return create(properties, property, properties.getProperty(property, "uniform"));
+    }
+
+    /**
+     * Creates a named distribution.
+     *
+     * @param properties the properties holding distribution parameters
+     * @param property   the property naming the distribution, for error messages
+     * @param name       the distribution name
+     * @return the key distribution
+     */
+    public static KeyDistribution create(Properties properties, String property, String name) {
+        switch (name) {
+            case "uniform":
+                return new UniformDistribution();
+            case "zipfian":
+                return new ZipfianDistribution(getTheta(properties));
+            case "scrambled-zipfian":
+                return new ScrambledZipfianDistribution(getTheta(properties));
+            case "latest":
+                return new LatestDistribution(getTheta(properties));
+            case "hotspot":
+                return new HotspotDistribution(
+                        getDoubleProperty(properties, "dash.workload.hotspot.set", 0.2),
+                        getDoubleProperty(properties, "dash.workload.hotspot.ops", 0.8));
+            case "exponential":
+                return new ExponentialDistribution(
+                        getDoubleProperty(properties, "dash.workload.exponential.percentile", 95),
+                        getDoubleProperty(properties, "dash.workload.exponential.fraction", 0.1));
+            default:
+                throw new IllegalArgumentException("The " + property + " property (" + name + ") is not one of " +
+                        "uniform, zipfian, scrambled-zipfian, latest, hotspot or exponential; please fix your property declaration.");
+        }
+    }
+
+    private static double getTheta(Properties properties) {
+        return getDoubleProperty(properties, "dash.workload.zipfian.theta", ZipfianDistribution.DEFAULT_THETA);
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.rbuck.dash.common.distributions;
+
+/**
+ * Chooses keys with a zipfian distribution, the most recently created key
+ * being the most popular.
+ */
+public class LatestDistribution implements KeyDistribution {
+
+    private final ZipfianDistribution zipfian;
+
+    /**
+     * Creates a latest distribution.
+     *
+     * @param theta the skew, from zero exclusive (uniform) to one exclusive
+     */
+    public LatestDistribution(double theta) {
+        this.zipfian = new ZipfianDistribution(theta);
+    }
+
+    @Override
+    public long next(long count) {
+        return count - 1 - zipfian.next(count);
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.rbuck.dash.common.distributions;
+
+/**
+ * Chooses keys with a zipfian distribution whose popular keys are scattered
+ * across the key space, rather than clustered among the oldest keys.
+ */
+public class ScrambledZipfianDistribution implements KeyDistribution {
+
+    private static final long FNV_OFFSET_BASIS_64 = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME_64 = 1099511628211L;
+
+    private final ZipfianDistribution zipfian;
+
+    /**
+     * Creates a scrambled zipfian distribution.
+     *
+     * @param theta the skew, from zero exclusive (uniform) to one exclusive
+     */
+    public ScrambledZipfianDistribution(double theta) {
+        this.zipfian = new ZipfianDistribution(theta);
+    }
+
+    @Override
+    public long next(long count) {
+        return (fnv64(zipfian.next(count)) & Long.MAX_VALUE) % count;
+    }
+
+    /**
+     * FNV-1a hash of the bytes of a long.
+     */
+    static long fnv64(long value) {
+        long hash = FNV_OFFSET_BASIS_64;
+        for (int i = 0; i < 8; i++) {
+            hash ^= value & 0xFF;
+            hash *= FNV_PRIME_64;
+            value >>>= 8;
+        }
+        return hash;
+    }
+}
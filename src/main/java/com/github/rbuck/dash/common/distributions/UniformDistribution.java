@@ -0,0 +1,14 @@
+package com.github.rbuck.dash.common.distributions;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses every key with equal probability.
+ */
+public class UniformDistribution implements KeyDistribution {
+
+    @Override
+    public long next(long count) {
+        return ThreadLocalRandom.current().nextLong(count);
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.rbuck.dash.common.distributions;
+
+import com.github.rbuck.dash.common.Preconditions;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses keys with a zipfian distribution, the oldest key being the most
+ * popular, then the next oldest, and so on.
+ * <p/>
+ * Uses the algorithm of Gray et al., "Quickly Generating Billion-Record
+ * Synthetic Databases", which draws in constant time given the zeta
+ * constant of the key count. Computing zeta is linear in the count, so as
+ * keys are added it is extended incrementally, and only once the count has
+ * grown by a percent; until then draws cover the keys counted last. Keys
+ * are never removed, so a count below that last counted is taken to be a
+ * stale read and draws are clamped to it rather than zeta recomputed.
+ */
+public class ZipfianDistribution implements KeyDistribution {
+
+    public static final double DEFAULT_THETA = 0.99;
+
+    private final double theta;
+    private final double alpha;
+    private final double zeta2;
+
+    private volatile State state;
+
+    /**
+     * Creates a zipfian distribution.
+     *
+     * @param theta the skew, from zero exclusive (uniform) to one exclusive
+     */
+    public ZipfianDistribution(double theta) {
+        Preconditions.checkArgument(theta > 0 && theta < 1, "Zipfian theta must be between zero and one exclusive");
+        this.theta = theta;
+        this.alpha = 1.0 / (1.0 - theta);
+        this.zeta2 = zeta(0, 2, theta, 0);
+        this.state = new State(0, 0);
+    }
+
+    @Override
+    public long next(long count) {
+        State current = state(count);
+        double u = ThreadLocalRandom.current().nextDouble();
+        double uz = u * current.zetan;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < 1.0 + Math.pow(0.5, theta)) {
+            return Math.min(1, count - 1);
+        }
+        long index = (long) (current.count * Math.pow(current.eta * u - current.eta + 1, alpha));
+        return Math.min(index, count - 1);
+    }
+
+    private State state(long count) {
+        // keys are only ever added, so a smaller count is that of a caller
+        // that read it just before another extended the state; draws are
+        // clamped to its count, so the state is never moved backwards...
+        State current = state;
+        if (count >= current.count + Math.max(1, current.count / 100)) {
+            synchronized (this) {
+                current = state;
+                if (count >= current.count + Math.max(1, current.count / 100)) {
+                    current = new State(count, zeta(current.count, count, theta, current.zetan));
+                    state = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static double zeta(long from, long to, double theta, double initial) {
+        double sum = initial;
+        for (long i = from; i < to; i++) {
+            sum += 1.0 / Math.pow(i + 1, theta);
+        }
+        return sum;
+    }
+
+    private class State {
+
+        final long count;
+        final double zetan;
+        final double eta;
+
+        State(long count, double zetan) {
+            this.count = count;
+            this.zetan = zetan;
+            this.eta = count > 2 ? (1 - Math.pow(2.0 / count, 1 - theta)) / (1 - zeta2 / zetan) : 0;
+        }
+    }
+}
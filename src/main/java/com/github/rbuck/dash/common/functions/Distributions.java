@@ -0,0 +1,23 @@
+package com.github.rbuck.dash.common.functions;
+
+import com.github.rbuck.dash.common.distributions.KeyDistribution;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Caches the distributions of a function by their item count and parameters,
+ * as some are costly to set up.
+ */
+class Distributions {
+
+    private final ConcurrentHashMap<String, KeyDistribution> distributions = new ConcurrentHashMap<>();
+
+    String next(String items, String parameters, Supplier<KeyDistribution> factory) {
+        long count = Long.parseLong(items);
+        if (count <= 0) {
+            throw new IllegalArgumentException("items must be greater than zero");
+        }
+        return Long.toString(distributions.computeIfAbsent(items + ";" + parameters, key -> factory.get()).next(count));
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.rbuck.dash.common.functions;
+
+import com.github.rbuck.dash.common.distributions.ExponentialDistribution;
+import com.github.vincentrussell.json.datagenerator.functions.Function;
+import com.github.vincentrussell.json.datagenerator.functions.FunctionInvocation;
+
+/**
+ * exponentially distributed integers, zero being the most frequent
+ */
+@Function(name = "exponential")
+public class Exponential {
+
+    private final Distributions distributions = new Distributions();
+
+    /**
+     * exponential integer, ninety five percent of results from the lowest ten percent
+     *
+     * @param items the count of integers, from zero
+     * @return the result
+     */
+    @FunctionInvocation
+    public String exponential(final String items) {
+        return exponential(items, "95", "0.1");
+    }
+
+    /**
+     * exponential integer
+     *
+     * @param items      the count of integers, from zero
+     * @param percentile the percentage of results within the fraction
+     * @param fraction   the fraction of lowest integers the percentile falls within
+     * @return the result
+     */
+    @FunctionInvocation
+    public String exponential(final String items, final String percentile, final String fraction) {
+        return distributions.next(items, percentile + "," + fraction, () -> new ExponentialDistribution(
+                Double.parseDouble(percentile), Double.parseDouble(fraction)));
+    }
+}
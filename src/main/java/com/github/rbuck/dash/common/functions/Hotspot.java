@@ -0,0 +1,39 @@
+package com.github.rbuck.dash.common.functions;
+
+import com.github.rbuck.dash.common.distributions.HotspotDistribution;
+import com.github.vincentrussell.json.datagenerator.functions.Function;
+import com.github.vincentrussell.json.datagenerator.functions.FunctionInvocation;
+
+/**
+ * integers, the lowest of which are hot
+ */
+@Function(name = "hotspot")
+public class Hotspot {
+
+    private final Distributions distributions = new Distributions();
+
+    /**
+     * hotspot integer, eighty percent of results from the lowest twenty percent
+     *
+     * @param items the count of integers, from zero
+     * @return the result
+     */
+    @FunctionInvocation
+    public String hotspot(final String items) {
+        return hotspot(items, "0.2", "0.8");
+    }
+
+    /**
+     * hotspot integer
+     *
+     * @param items          the count of integers, from zero
+     * @param hotSetFraction the fraction of integers that are hot
+     * @param hotOpsFraction the fraction of results that are hot
+     * @return the result
+     */
+    @FunctionInvocation
+    public String hotspot(final String items, final String hotSetFraction, final String hotOpsFraction) {
+        return distributions.next(items, hotSetFraction + "," + hotOpsFraction, () -> new HotspotDistribution(
+                Double.parseDouble(hotSetFraction), Double.parseDouble(hotOpsFraction)));
+    }
+}
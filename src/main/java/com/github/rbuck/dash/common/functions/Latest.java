@@ -0,0 +1,38 @@
+package com.github.rbuck.dash.common.functions;
+
+import com.github.rbuck.dash.common.distributions.LatestDistribution;
+import com.github.rbuck.dash.common.distributions.ZipfianDistribution;
+import com.github.vincentrussell.json.datagenerator.functions.Function;
+import com.github.vincentrussell.json.datagenerator.functions.FunctionInvocation;
+
+/**
+ * zipfian distributed integers, the greatest being the most frequent
+ */
+@Function(name = "latest")
+public class Latest {
+
+    private final Distributions distributions = new Distributions();
+
+    /**
+     * latest integer with the default skew
+     *
+     * @param items the count of integers, from zero
+     * @return the result
+     */
+    @FunctionInvocation
+    public String latest(final String items) {
+        return latest(items, Double.toString(ZipfianDistribution.DEFAULT_THETA));
+    }
+
+    /**
+     * latest integer
+     *
+     * @param items the count of integers, from zero
+     * @param theta the skew, between zero and one exclusive
+     * @return the result
+     */
+    @FunctionInvocation
+    public String latest(final String items, final String theta) {
+        return distributions.next(items, theta, () -> new LatestDistribution(Double.parseDouble(theta)));
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.rbuck.dash.common.functions;
+
+import com.github.rbuck.dash.common.distributions.ScrambledZipfianDistribution;
+import com.github.rbuck.dash.common.distributions.ZipfianDistribution;
+import com.github.vincentrussell.json.datagenerator.functions.Function;
+import com.github.vincentrussell.json.datagenerator.functions.FunctionInvocation;
+
+/**
+ * zipfian distributed integers, the most frequent scattered across the range
+ */
+@Function(name = "scrambledZipfian")
+public class ScrambledZipfian {
+
+    private final Distributions distributions = new Distributions();
+
+    /**
+     * scrambled zipfian integer with the default skew
+     *
+     * @param items the count of integers, from zero
+     * @return the result
+     */
+    @FunctionInvocation
+    public String scrambledZipfian(final String items) {
+        return scrambledZipfian(items, Double.toString(ZipfianDistribution.DEFAULT_THETA));
+    }
+
+    /**
+     * scrambled zipfian integer
+     *
+     * @param items the count of integers, from zero
+     * @param theta the skew, between zero and one exclusive
+     * @return the result
+     */
+    @FunctionInvocation
+    public String scrambledZipfian(final String items, final String theta) {
+        return distributions.next(items, theta, () -> new ScrambledZipfianDistribution(Double.parseDouble(theta)));
+    }
+}
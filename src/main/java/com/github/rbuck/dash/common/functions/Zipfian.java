@@ -0,0 +1,37 @@
+package com.github.rbuck.dash.common.functions;
+
+import com.github.rbuck.dash.common.distributions.ZipfianDistribution;
+import com.github.vincentrussell.json.datagenerator.functions.Function;
+import com.github.vincentrussell.json.datagenerator.functions.FunctionInvocation;
+
+/**
+ * zipfian distributed integers, zero being the most frequent
+ */
+@Function(name = "zipfian")
+public class Zipfian {
+
+    private final Distributions distributions = new Distributions();
+
+    /**
+     * zipfian integer with the default skew
+     *
+     * @param items the count of integers, from zero
+     * @return the result
+     */
+    @FunctionInvocation
+    public String zipfian(final String items) {
+        return zipfian(items, Double.toString(ZipfianDistribution.DEFAULT_THETA));
+    }
+
+    /**
+     * zipfian integer
+     *
+     * @param items the count of integers, from zero
+     * @param theta the skew, between zero and one exclusive
+     * @return the result
+     */
+    @FunctionInvocation
+    public String zipfian(final String items, final String theta) {
+        return distributions.next(items, theta, () -> new ZipfianDistribution(Double.parseDouble(theta)));
+    }
+}
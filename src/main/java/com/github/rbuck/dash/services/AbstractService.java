@@ -1,12 +1,35 @@
 package com.github.rbuck.dash.services;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import com.github.rbuck.dash.common.ConstantLimiter;
+import com.github.rbuck.dash.common.CountingTransactionContext;
+import com.github.rbuck.dash.common.EventLog;
+import com.github.rbuck.dash.common.Exceptions;
 import com.github.rbuck.dash.common.Limiter;
+import com.github.rbuck.dash.common.MetricsService;
+import com.github.rbuck.dash.common.Mix;
+import com.github.rbuck.dash.common.OpenLoopSchedule;
+import com.github.rbuck.dash.common.OutcomeMeters;
+import com.github.rbuck.dash.common.PhaseSchedule;
+import com.github.rbuck.dash.common.PoissonLimiter;
+import com.github.rbuck.dash.common.Preconditions;
 import com.github.rbuck.dash.common.PropertiesHelper;
+import com.github.rbuck.dash.common.SampledLogger;
+import com.github.rbuck.dash.common.SpikeLimiter;
+import com.github.rbuck.dash.common.StripedLimiter;
+import org.HdrHistogram.Histogram;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.text.SimpleDateFormat;
-import java.util.concurrent.CountDownLatch;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 import static java.lang.System.getProperties;
 
@@ -18,6 +41,27 @@ import static java.lang.System.getProperties;
 public abstract class AbstractService implements Service {
 
     private static final String WORKER_THREADS = "dash.driver.threads";
+    private static final String DRIVER_MODEL = "dash.driver.model";
+    private static final String WORKER_EXECUTOR = "dash.driver.executor";
+    private static final String WORKER_IN_FLIGHT = "dash.driver.inflight";
+    private static final String SHUTDOWN_TIMEOUT = "dash.driver.shutdown.timeout";
+    private static final String DRIVER_LIMITER = "dash.driver.rates.limiter";
+    private static final String DRIVER_STRIPES = "dash.driver.rates.stripes";
+    private static final String ERRORS_LOG_RATE = "dash.errors.log.rate";
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * The load generation model. A closed model issues the next operation
+     * only once the prior completes, and is throttled by a limiter. An open
+     * model issues operations according to a fixed schedule regardless of
+     * how long prior operations took, and measures latency from the intended
+     * start time so that stalls are not hidden (coordinated omission).
+     */
+    enum Model {
+        CLOSED,
+        OPEN
+    }
 
     enum Status {
         CREATED,
@@ -33,8 +77,31 @@ public abstract class AbstractService implements Service {
         threadGroup.setDaemon(true);
     }
 
+    /**
+     * The operation being executed on a thread.
+     */
+    private static final class Operation {
+
+        long intendedStart;
+        long actualStart;
+        int worker;
+        EventLog.Writer writer;
+    }
+
+    private final ThreadLocal<Operation> operation = ThreadLocal.withInitial(Operation::new);
+
     private Thread[] threads;
     private CountDownLatch threadLatch;
+    private ExecutorService operationExecutor;
+    private int shutdownTimeout;
+    private volatile Limiter limiter;
+    private final Meter dispatched = new Meter();
+    private PhaseSchedule schedule;
+    private volatile PhaseClock phase;
+    private volatile double rateScale = 1.0;
+    private MetricsService metricsService;
+    private volatile EventLog eventLog;
+    private volatile SampledLogger failureLog;
 
     private AtomicReference<Status> status = new AtomicReference<>(Status.DESTROYED);
 
@@ -60,6 +127,7 @@ public abstract class AbstractService implements Service {
             System.out.println("[" + now() + "] created");
             threadLatch = new CountDownLatch(getThreadCount());
             threads = new Thread[getThreadCount()];
+            shutdownTimeout = getShutdownTimeout();
         }
     }
 
@@ -73,36 +141,272 @@ public abstract class AbstractService implements Service {
         if (status.compareAndSet(Status.CREATED, Status.STARTED)) {
             System.out.println("[" + now() + "] started");
 
-            Context context = createContext();
-            final Limiter limiter = createLimiter();
+            schedule = new PhaseSchedule(getProperties());
+            List<PhaseSchedule.Phase> phases = schedule.getPhases();
+            enterPhase(phases.isEmpty() ? PhaseSchedule.Phase.STEADY : phases.get(0));
+
+            eventLog = EventLog.open(getProperties());
+            failureLog = new SampledLogger(LoggerFactory.getLogger(getClass()),
+                    PropertiesHelper.getDoubleProperty(getProperties(), ERRORS_LOG_RATE, 1.0));
+
+            final Model model = getModel();
+            final Limiter limiter = model == Model.CLOSED ? createLimiter() : null;
+            this.limiter = limiter;
+            final long origin = System.nanoTime();
+            final long interval = getScheduleInterval();
+            final ThreadFactory threadFactory = createThreadFactory();
+            final int inFlight = getInFlightCount();
+            if (inFlight > 1) {
+                operationExecutor = Executors.newCachedThreadPool(createThreadFactory());
+            }
             for (int i = 0; i < getThreadCount(); i++) {
-                final Context localContext = context;
-                threads[i] = new Thread(threadGroup, Integer.toString(i)) {
-                    @Override
-                    public void run() {
-                        try {
-                            while (isExecutable() && !isInterrupted()) {
-                                int tokenCount = getTokenCount(localContext, limiter);
-                                if (tokenCount > 0) {
-                                    limiter.consume(tokenCount); // number of events...
-                                    while (tokenCount-- > 0) {
-                                        execute(localContext); // represents one event
-                                    }
-                                }
-                            }
-                        } catch (Error e) {
-                            panic(e);
-                        } finally {
-                            threadLatch.countDown();
+                final Dispatcher dispatcher = inFlight > 1 ?
+                        new PipelinedDispatcher(inFlight, i) : new InlineDispatcher(createContext(), i);
+                final OpenLoopSchedule schedule = model == Model.OPEN ?
+                        new OpenLoopSchedule(origin + i * interval, interval * getThreadCount()) : null;
+                final Throttle throttle = new Throttle(i);
+                threads[i] = threadFactory.newThread(() -> {
+                    try {
+                        if (schedule != null) {
+                            runOpen(dispatcher, schedule, throttle);
+                        } else {
+                            runClosed(dispatcher, limiter, throttle);
                         }
+                    } catch (InterruptedException e) {
+                        // stopped while waiting for an operation slot
+                    } catch (Error e) {
+                        panic(e);
+                    } finally {
+                        threadLatch.countDown();
                     }
-                };
+                });
                 threads[i].start();
-                context = createContext();
             }
         }
     }
 
+    private void runOpen(Dispatcher dispatcher, OpenLoopSchedule schedule, Throttle throttle) throws InterruptedException {
+        final Thread thread = Thread.currentThread();
+        while (isExecutable() && !thread.isInterrupted()) {
+            long startTime = schedule.next();
+            if (thread.isInterrupted()) {
+                break;
+            }
+            if (throttle.isActive() && throttle.admit()) {
+                dispatcher.dispatch(startTime); // represents one event
+                dispatched.mark();
+            }
+        }
+    }
+
+    private void runClosed(Dispatcher dispatcher, Limiter limiter, Throttle throttle) throws InterruptedException {
+        final Thread thread = Thread.currentThread();
+        while (isExecutable() && !thread.isInterrupted()) {
+            if (!throttle.isActive()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            int tokenCount = getTokenCount(limiter);
+            if (tokenCount > 0) {
+                limiter.consume(tokenCount); // number of events...
+                int issued = 0;
+                while (tokenCount-- > 0) {
+                    if (throttle.admit()) {
+                        dispatcher.dispatch(System.nanoTime()); // represents one event
+                        issued++;
+                    }
+                }
+                dispatched.mark(issued);
+            }
+        }
+    }
+
+    /**
+     * The phase of the run and when it began.
+     */
+    private static final class PhaseClock {
+
+        final PhaseSchedule.Phase phase;
+        final long begin;
+
+        PhaseClock(PhaseSchedule.Phase phase, long begin) {
+            this.phase = phase;
+            this.begin = begin;
+        }
+    }
+
+    /**
+     * Shapes the load a worker drives to that of the current phase. When
+     * ramping threads, a worker is active only while its index is within
+     * the fraction of workers the load calls for; idle closed-model workers
+     * park, and idle open-model workers skip their slots. When ramping the
+     * rate, or when the rate is scaled down, a worker admits operations in
+     * proportion to the load, carrying fractional credit forward so the
+     * thinned rate is exact over time.
+     */
+    private final class Throttle {
+
+        private final int index;
+        private double credit;
+
+        Throttle(int index) {
+            this.index = index;
+        }
+
+        boolean isActive() {
+            if (schedule.getRamp() != PhaseSchedule.Ramp.THREADS) {
+                return true;
+            }
+            return index < Math.max(1, (int) Math.ceil(getLoad() * threads.length));
+        }
+
+        boolean admit() {
+            final double load = getRateLoad();
+            if (load >= 1.0) {
+                return true;
+            }
+            credit += load;
+            if (credit >= 1.0) {
+                credit -= 1.0;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Issues one operation on behalf of a worker.
+     */
+    private interface Dispatcher {
+
+        /**
+         * Issues an operation.
+         *
+         * @param startTime the intended start time of the operation
+         * @throws InterruptedException if interrupted while waiting to issue
+         */
+        void dispatch(long startTime) throws InterruptedException;
+    }
+
+    /**
+     * Executes each operation on the worker thread itself; the worker has
+     * exactly one operation outstanding.
+     */
+    private final class InlineDispatcher implements Dispatcher {
+
+        private final Context context;
+        private final int worker;
+
+        InlineDispatcher(Context context, int worker) {
+            this.context = context;
+            this.worker = worker;
+        }
+
+        @Override
+        public void dispatch(long startTime) {
+            begin(startTime, worker);
+            execute(context);
+        }
+    }
+
+    /**
+     * Hands each operation off to the operation executor so the worker may
+     * keep several outstanding. Each in-flight slot owns its own context, so
+     * contexts are never shared between concurrent operations; the worker
+     * waits for a slot to free up once all are in use. The operation
+     * records its latency upon completion, measured from the intended start
+     * time, so any wait for a slot is accounted for.
+     */
+    private final class PipelinedDispatcher implements Dispatcher {
+
+        private final BlockingQueue<Context> idle;
+        private final int worker;
+
+        PipelinedDispatcher(int slots, int worker) {
+            this.worker = worker;
+            idle = new ArrayBlockingQueue<>(slots);
+            for (int i = 0; i < slots; i++) {
+                idle.add(createContext());
+            }
+        }
+
+        @Override
+        public void dispatch(final long startTime) throws InterruptedException {
+            final Context context = idle.take();
+            try {
+                operationExecutor.execute(() -> {
+                    try {
+                        begin(startTime, worker);
+                        execute(context);
+                    } catch (Error e) {
+                        panic(e);
+                    } finally {
+                        idle.add(context);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // shutting down...
+                idle.add(context);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Begins a phase of the run; the load driven from now on is that of the
+     * phase, see {@link PhaseSchedule}. The first phase is begun upon start.
+     *
+     * @param next the phase begun
+     */
+    @Override
+    public void enterPhase(PhaseSchedule.Phase next) {
+        if (status.get() == Status.STARTED) {
+            System.out.println("[" + now() + "] phase " + next.getName() +
+                    " (" + schedule.getDuration(next) + " seconds)");
+            phase = new PhaseClock(next, System.nanoTime());
+            if (metricsService != null) {
+                try {
+                    metricsService.beginPhase(next);
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Scales the rate operations are issued at, on top of the load of the
+     * current phase; used to step through rates when searching capacity.
+     *
+     * @param scale the fraction of the limit rate to issue operations at
+     */
+    @Override
+    public void setRateScale(double scale) {
+        Preconditions.checkArgument(scale > 0 && scale <= 1, "Rate scale must be greater than zero and at most one");
+        rateScale = scale;
+    }
+
+    /**
+     * Ends the current measurement window of every timer early.
+     *
+     * @return the latencies recorded in the ended window, by timer name
+     */
+    @Override
+    public Map<String, Histogram> endWindow() {
+        return metricsService != null ? metricsService.endWindow() : Collections.emptyMap();
+    }
+
+    /**
+     * Get the latencies recorded over the run, the steady state alone when
+     * the run is phased.
+     *
+     * @return the full-run latencies, by timer name
+     */
+    @Override
+    public Map<String, Histogram> getTotalHistograms() {
+        return metricsService != null ? metricsService.getTotalHistograms() : Collections.emptyMap();
+    }
+
     private void panic(Error e) {
         stop();
         throw e;
@@ -116,6 +420,16 @@ public abstract class AbstractService implements Service {
                 threads[i].interrupt();
                 threads[i] = null;
             }
+            if (operationExecutor != null) {
+                operationExecutor.shutdownNow();
+            }
+            if (limiter instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) limiter).close();
+                } catch (Exception e) {
+                    // ignore
+                }
+            }
         }
     }
 
@@ -126,9 +440,25 @@ public abstract class AbstractService implements Service {
             System.out.println("[" + now() + "] destroyed");
             try {
                 threadLatch.await();
+                if (operationExecutor != null) {
+                    if (!operationExecutor.awaitTermination(shutdownTimeout, TimeUnit.SECONDS)) {
+                        System.err.println("[" + now() + "] operations still running " + shutdownTimeout +
+                                " seconds after shutdown; abandoning them");
+                    }
+                    operationExecutor = null;
+                }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
+            if (eventLog != null) {
+                try {
+                    eventLog.close();
+                    System.out.println("[" + now() + "] wrote the event log to " + eventLog.getDir());
+                } catch (IOException e) {
+                    System.err.println("Failed to close the event log: " + Exceptions.toStringAllCauses(e));
+                }
+                eventLog = null;
+            }
         }
     }
 
@@ -143,6 +473,140 @@ public abstract class AbstractService implements Service {
         return PropertiesHelper.getIntegerProperty(getProperties(), WORKER_THREADS, Runtime.getRuntime().availableProcessors() * 4);
     }
 
+    /**
+     * Get the count of operations each driver thread keeps in flight. With
+     * one, the default, each driver thread executes its operations itself;
+     * with more, it hands them off and keeps issuing until that many are
+     * outstanding, so the driver thread count no longer caps throughput
+     * on high-latency links.
+     *
+     * @return the count of in-flight operations per driver thread
+     */
+    protected int getInFlightCount() {
+        int inFlight = PropertiesHelper.getIntegerProperty(getProperties(), WORKER_IN_FLIGHT, 1);
+        Preconditions.checkArgument(inFlight > 0, "The " + WORKER_IN_FLIGHT + " property must be greater than zero");
+        return inFlight;
+    }
+
+    /**
+     * Get the seconds to wait, once stopped, for in-flight operations to
+     * complete; read when the service is created, so that an invalid value
+     * fails the run up front rather than its teardown.
+     *
+     * @return the shutdown timeout in seconds
+     */
+    protected int getShutdownTimeout() {
+        int timeout = PropertiesHelper.getIntegerProperty(getProperties(), SHUTDOWN_TIMEOUT, 30);
+        Preconditions.checkArgument(timeout >= 0, "The " + SHUTDOWN_TIMEOUT + " property (" +
+                timeout + ") is less than zero; please fix your property declaration.");
+        return timeout;
+    }
+
+    /**
+     * Get the load generation model; see {@link Model}.
+     *
+     * @return the load generation model
+     */
+    private Model getModel() {
+        String model = PropertiesHelper.getStringProperty(getProperties(), DRIVER_MODEL, Model.CLOSED.name());
+        try {
+            return Model.valueOf(model.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("The " + DRIVER_MODEL + " property (" +
+                    model + ") is not one of open or closed; please fix your property declaration.");
+        }
+    }
+
+    /**
+     * Get the time at which the current operation was meant to start, in
+     * {@link System#nanoTime()} units. Services measure latency from this
+     * point rather than from when they were actually dispatched; in the
+     * closed model the two are the same.
+     *
+     * @return the intended start time of the operation on the calling thread
+     */
+    protected final long getIntendedStartTime() {
+        return operation.get().intendedStart;
+    }
+
+    /**
+     * Records the outcome of the operation just executed on the calling
+     * thread: its latency, measured from the intended start time, and its
+     * retries in the tag's meters, see {@link OutcomeMeters}, and the event
+     * in the event log if enabled with {@code dash.events.enabled}, see
+     * {@link EventLog}. Failures are logged at a limited rate, at most
+     * {@code dash.errors.log.rate} per second. Services call this once per
+     * operation, upon completion.
+     *
+     * @param type    the type of operation
+     * @param meters  the meters of the operation's tag
+     * @param failure the cause of failure, or null if it succeeded
+     */
+    protected final void recordOutcome(Mix.Type type, OutcomeMeters meters, Throwable failure) {
+        final long endTime = System.nanoTime();
+        final Operation current = operation.get();
+        final long latency = endTime - current.intendedStart;
+        final int retries = CountingTransactionContext.getRetries();
+        if (failure == null) {
+            meters.success(latency, retries);
+        } else {
+            meters.failure(latency, retries, failure);
+            // don't warn on shutdown!
+            if (!(failure instanceof InterruptedException)) {
+                failureLog.warn(type.getTag(), failure);
+            }
+        }
+        final EventLog log = eventLog;
+        if (log != null) {
+            recordEvent(log, current, type, latency,
+                    failure == null ? EventLog.Outcome.SUCCESS : EventLog.Outcome.FAILURE, retries);
+        }
+    }
+
+    private void recordEvent(EventLog log, Operation current, Mix.Type type, long latency,
+                             EventLog.Outcome outcome, int retries) {
+        try {
+            if (current.writer == null) {
+                current.writer = log.newWriter();
+            }
+            log.nameTag(type.getOrdinal(), type.getTag());
+            current.writer.append(current.intendedStart, current.actualStart, latency,
+                    current.worker, type.getOrdinal(), outcome, retries);
+        } catch (IOException e) {
+            throw new Error("Failed to write the event log to " + log.getDir(), e);
+        }
+    }
+
+    private void begin(long startTime, int worker) {
+        final Operation current = operation.get();
+        current.intendedStart = startTime;
+        current.actualStart = eventLog != null ? System.nanoTime() : startTime;
+        current.worker = worker;
+        CountingTransactionContext.reset();
+    }
+
+    /**
+     * Get the global interval between scheduled operations in the open model.
+     *
+     * @return the inter-arrival interval in nanoseconds
+     */
+    private long getScheduleInterval() {
+        return Math.max(1, TimeUnit.SECONDS.toNanos(1) / Math.max(1, ConstantLimiter.getLimitRate()));
+    }
+
+    /**
+     * Creates the factory for driver threads; by default one platform thread
+     * per worker, or with {@code dash.driver.executor=virtual} one virtual
+     * thread per worker.
+     *
+     * @return the driver thread factory
+     * @see WorkerThreads
+     */
+    protected ThreadFactory createThreadFactory() {
+        String kind = PropertiesHelper.getStringProperty(getProperties(), WORKER_EXECUTOR, WorkerThreads.Kind.PLATFORM.name());
+        return WorkerThreads.newThreadFactory(WorkerThreads.parseKind(WORKER_EXECUTOR, kind), threadGroup);
+    }
+
     /**
      * Create a concurrency context.
      *
@@ -160,15 +624,81 @@ public abstract class AbstractService implements Service {
     protected abstract void execute(Context context);
 
     /**
-     * Creates a rate limiter to governor the driver execution rate.
+     * Creates a rate limiter to governor the driver execution rate; by
+     * default a constant rate token bucket, or with
+     * {@code dash.driver.rates.limiter} Poisson arrivals, periodic spikes,
+     * or a striped limiter for very high rates.
      *
      * @return the constructed rate limiter
      */
     private Limiter createLimiter() {
-        return new ConstantLimiter();
+        String limiter = PropertiesHelper.getStringProperty(getProperties(), DRIVER_LIMITER, "constant");
+        switch (limiter.toLowerCase()) {
+            case "constant":
+                return new ConstantLimiter();
+            case "poisson":
+                return new PoissonLimiter();
+            case "spike":
+                return new SpikeLimiter();
+            case "striped":
+                int stripes = PropertiesHelper.getIntegerProperty(getProperties(), DRIVER_STRIPES, getThreadCount());
+                Preconditions.checkArgument(stripes > 0, "The " + DRIVER_STRIPES + " property (" +
+                        stripes + ") is not greater than zero; please fix your property declaration.");
+                return new StripedLimiter(stripes);
+            default:
+                throw new IllegalArgumentException("The " + DRIVER_LIMITER + " property (" +
+                        limiter + ") is not one of constant, poisson, spike or striped; please fix your property declaration.");
+        }
+    }
+
+    /**
+     * Registers driver metrics: the driver.rate meter of operations issued,
+     * and the driver.rate.target gauge of the rate the limiter admits, or in
+     * the open model the scheduled rate, so the achieved rate may be compared
+     * with the target; the target is scaled by the load of the current phase
+     * when ramping the rate, and by the rate scale. The driver.phase gauge
+     * names the current phase, so that reported intervals may be attributed
+     * to phases. The service's phases and measurement windows are begun in
+     * the metrics service from then on.
+     *
+     * @param metricsService the metrics service of the service
+     */
+    protected final void registerDriverMetrics(MetricsService metricsService) {
+        this.metricsService = metricsService;
+        MetricRegistry registry = metricsService.getMetricRegistry();
+        registry.register("driver.rate", dispatched);
+        registry.register("driver.rate.target", (Gauge<Double>) () -> {
+            Limiter current = limiter;
+            double target = current != null ? current.getTargetRate() : (double) ConstantLimiter.getLimitRate();
+            return phase != null ? target * getRateLoad() : target;
+        });
+        registry.register("driver.phase", (Gauge<String>) () -> {
+            PhaseClock current = phase;
+            return current != null ? current.phase.getName() : "";
+        });
+    }
+
+    /**
+     * Get the load of the current phase at this instant.
+     *
+     * @return the load, as a fraction of the full load
+     */
+    private double getLoad() {
+        final PhaseClock current = phase;
+        return schedule.getLoad(current.phase, System.nanoTime() - current.begin);
+    }
+
+    /**
+     * Get the fraction of the limit rate to issue operations at, at this
+     * instant.
+     *
+     * @return the rate load
+     */
+    private double getRateLoad() {
+        return schedule.getRamp() == PhaseSchedule.Ramp.RATE ? getLoad() * rateScale : rateScale;
     }
 
-    private int getTokenCount(Context context, Limiter limiter) {
+    private int getTokenCount(Limiter limiter) {
         return 1; // constant-rate
     }
 
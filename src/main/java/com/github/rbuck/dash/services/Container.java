@@ -1,9 +1,14 @@
 package com.github.rbuck.dash.services;
 
+import com.github.rbuck.dash.common.PhaseSchedule;
+import org.HdrHistogram.Histogram;
+
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.TreeMap;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -72,17 +77,38 @@ public class Container {
 
     private final List<Service> services = new ArrayList<>();
 
+    private Service active;
+
     public Container() {
         setStatus(Status.STOPPED);
     }
 
-    public void start() throws Exception {
+    /**
+     * Loads and creates the service, unless already created, without
+     * starting it; the container may then be started later.
+     *
+     * @throws Exception if the service fails to create
+     */
+    public void create() throws Exception {
         shutdownLock.lock();
         try {
-            if (status != Status.STARTED) {
+            if (active == null) {
                 Service service = loadService();
                 service.create();
-                service.start();
+                services.add(service);
+                active = service;
+            }
+        } finally {
+            shutdownLock.unlock();
+        }
+    }
+
+    public void start() throws Exception {
+        shutdownLock.lock();
+        try {
+            if (status != Status.STARTED) {
+                create();
+                active.start();
                 setStatus(Status.STARTED);
             }
         } finally {
@@ -90,6 +116,89 @@ public class Container {
         }
     }
 
+    /**
+     * Moves started services on to the next phase of the run.
+     *
+     * @param phase the phase begun
+     */
+    public void enterPhase(PhaseSchedule.Phase phase) {
+        shutdownLock.lock();
+        try {
+            if (status == Status.STARTED) {
+                for (Service service : services) {
+                    service.enterPhase(phase);
+                }
+            }
+        } finally {
+            shutdownLock.unlock();
+        }
+    }
+
+    /**
+     * Scales the rate started services issue operations at.
+     *
+     * @param scale the fraction of the limit rate to issue operations at
+     */
+    public void setRateScale(double scale) {
+        shutdownLock.lock();
+        try {
+            if (status == Status.STARTED) {
+                for (Service service : services) {
+                    service.setRateScale(scale);
+                }
+            }
+        } finally {
+            shutdownLock.unlock();
+        }
+    }
+
+    /**
+     * Ends the current measurement window of started services.
+     *
+     * @return the latencies recorded in the ended window, by timer name
+     */
+    public Map<String, Histogram> endWindow() {
+        Map<String, Histogram> latencies = new TreeMap<>();
+        shutdownLock.lock();
+        try {
+            if (status == Status.STARTED) {
+                for (Service service : services) {
+                    merge(latencies, service.endWindow());
+                }
+            }
+        } finally {
+            shutdownLock.unlock();
+        }
+        return latencies;
+    }
+
+    /**
+     * Get the latencies the services recorded over the run.
+     *
+     * @return the full-run latencies, by timer name
+     */
+    public Map<String, Histogram> getTotalHistograms() {
+        Map<String, Histogram> latencies = new TreeMap<>();
+        shutdownLock.lock();
+        try {
+            for (Service service : services) {
+                merge(latencies, service.getTotalHistograms());
+            }
+        } finally {
+            shutdownLock.unlock();
+        }
+        return latencies;
+    }
+
+    private static void merge(Map<String, Histogram> into, Map<String, Histogram> from) {
+        for (Map.Entry<String, Histogram> entry : from.entrySet()) {
+            into.merge(entry.getKey(), entry.getValue(), (a, b) -> {
+                a.add(b);
+                return a;
+            });
+        }
+    }
+
     public void stop() {
         shutdownLock.lock();
         try {
@@ -183,14 +292,16 @@ public class Container {
         if (className == null) {
             throw new Error("No service class defined.");
         }
+        // only the service created is managed, others are never created...
+        List<Service> loaded = new ArrayList<>();
         ServiceLoader<Service> serviceLoader = ServiceLoader.load(Service.class);
         for (Service service : serviceLoader) {
             System.out.println(service.getClass().getName());
             if (Service.class.isAssignableFrom(service.getClass())) {
-                services.add(service);
+                loaded.add(service);
             }
         }
-        for (Service service : services) {
+        for (Service service : loaded) {
             if (className.equals(service.getClass().getName())) {
                 return service;
             }
@@ -1,5 +1,11 @@
 package com.github.rbuck.dash.services;
 
+import com.github.rbuck.dash.common.PhaseSchedule;
+import org.HdrHistogram.Histogram;
+
+import java.util.Collections;
+import java.util.Map;
+
 /**
  * Service interface for a continuous test.
  */
@@ -19,6 +25,40 @@ public interface Service {
      */
     void start() throws Exception;
 
+    /**
+     * Begin a phase of the run, start is already called.
+     *
+     * @param phase the phase begun
+     */
+    default void enterPhase(PhaseSchedule.Phase phase) {
+    }
+
+    /**
+     * Scale the rate operations are issued at, start is already called.
+     *
+     * @param scale the fraction of the limit rate to issue operations at
+     */
+    default void setRateScale(double scale) {
+    }
+
+    /**
+     * End the current measurement window and begin the next.
+     *
+     * @return the latencies recorded in the ended window, by timer name
+     */
+    default Map<String, Histogram> endWindow() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Get the latencies recorded over the run, stop is already called.
+     *
+     * @return the full-run latencies, by timer name
+     */
+    default Map<String, Histogram> getTotalHistograms() {
+        return Collections.emptyMap();
+    }
+
     /**
      * Stop the service.
      */
@@ -0,0 +1,85 @@
+package com.github.rbuck.dash.services;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the thread factories used to run service workers.
+ * <p/>
+ * Two kinds are supported: platform threads, one operating system thread
+ * per worker, and virtual threads, which are scheduled by the JVM onto a
+ * small carrier pool and so permit tens of thousands of concurrent workers.
+ * Virtual threads require a Java 21 or later runtime; they are looked up
+ * reflectively so the build itself still targets Java 8.
+ */
+public final class WorkerThreads {
+
+    public enum Kind {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    private WorkerThreads() {
+    }
+
+    /**
+     * Creates a thread factory of the designated kind. Threads are named by
+     * the sequence in which they are created, starting from zero.
+     *
+     * @param kind        the kind of thread to create
+     * @param threadGroup the group platform threads are created in
+     * @return the thread factory
+     * @throws IllegalStateException if virtual threads are not supported by the runtime
+     */
+    public static ThreadFactory newThreadFactory(Kind kind, ThreadGroup threadGroup) {
+        switch (kind) {
+            case VIRTUAL:
+                return newVirtualThreadFactory();
+            default:
+                return newPlatformThreadFactory(threadGroup);
+        }
+    }
+
+    /**
+     * Parses a thread kind.
+     *
+     * @param property the property the value was declared by, for error reporting
+     * @param value    the value to parse, case insensitive
+     * @return the kind
+     */
+    public static Kind parseKind(String property, String value) {
+        try {
+            return Kind.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("The " + property + " property (" +
+                    value + ") is not one of platform or virtual; please fix your property declaration.");
+        }
+    }
+
+    private static ThreadFactory newPlatformThreadFactory(ThreadGroup threadGroup) {
+        final AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(threadGroup, runnable, Integer.toString(sequence.getAndIncrement()));
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static ThreadFactory newVirtualThreadFactory() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method name = builderClass.getMethod("name", String.class, long.class);
+            Method factory = builderClass.getMethod("factory");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = name.invoke(builder, "", 0L);
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or later; running on " +
+                    System.getProperty("java.version"), e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Virtual threads are not available: " + e.getCause(), e.getCause());
+        }
+    }
+}
@@ -1,22 +1,28 @@
 package com.github.rbuck.dash.services.cloud;
 
 import com.codahale.metrics.MetricRegistry;
-import com.codahale.metrics.Timer;
 import com.github.rbuck.dash.common.*;
+import com.github.rbuck.dash.common.distributions.KeyDistribution;
+import com.github.rbuck.dash.common.distributions.KeyDistributions;
 import com.github.rbuck.dash.services.AbstractService;
 import com.github.rbuck.dash.services.Context;
-import com.github.rbuck.retry.FixedInterval;
 import com.github.rbuck.retry.SqlRetryPolicy;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
 import java.sql.*;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Properties;
-import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static com.github.rbuck.dash.common.PropertiesHelper.getBooleanProperty;
+import static com.github.rbuck.dash.common.PropertiesHelper.getIntegerProperty;
+import static com.github.rbuck.dash.common.PropertiesHelper.getLongProperty;
 import static java.lang.System.getProperties;
 
 /**
@@ -27,44 +33,63 @@ import static java.lang.System.getProperties;
  */
 public class CloudService extends AbstractService {
 
+    /**
+     * The operations that scan result sets, fetched per their cursor
+     * settings and metered by the rows and bytes they consume.
+     */
+    private static final Set<String> SCAN_TAGS = new HashSet<>(Arrays.asList("OLTP_R2", "OLTP_R3", "OLAP_R3", "OLAP_P3"));
+
     private final MetricRegistry metricRegistry = new MetricRegistry();
     private final MetricsService metricsService = new MetricsService(metricRegistry);
 
-    private SqlRetryPolicy<Boolean> retryPolicy;
-    private HashMap<String, Timer> meters;
-    private Random random;
+    private RetryPolicyFactory retryPolicies;
+    private HashMap<String, OutcomeMeters> meters;
+    private HashMap<String, KeyDistribution> distributions;
+    private HashMap<String, CursorSettings> cursors;
+    private HashMap<String, ScanMeters> scans;
+    private SyntheticData.StringPool names;
+    private SyntheticData.StringPool descriptions;
+    private KeyRegistry accounts;
+    private AtomicLong accountKeys;
 
     private Dialect dialect;
+    private StatementCache statements;
     private Mix mix;
+    private PartitionedScan partitionedScan;
 
     public CloudService() {
     }
 
     class CloudContext implements Context {
 
-        final AtomicLong counter;
-        final String identity;
+        final SqlRetryPolicy<Boolean> retryPolicy;
+        final Mix.Sampler sampler;
+        final ScanMeters.Tally tally = new ScanMeters.Tally();
+        KeyDistribution distribution;
+        CursorSettings cursor;
 
-        CloudContext() {
-            this.counter = new AtomicLong(0);
-            this.identity = SyntheticData.genRandString(15);
+        CloudContext(SqlRetryPolicy<Boolean> retryPolicy, Mix.Sampler sampler) {
+            this.retryPolicy = retryPolicy;
+            this.sampler = sampler;
         }
     }
 
     private void createAccount(CloudContext context, Connection connection) throws SQLException {
-        try (PreparedStatement putUser = connection.prepareStatement(dialect.getProperty("PUT_ACCOUNT"))) {
-            putUser.setString(1, getNextUrn(context)); // unique
-            putUser.setString(2, SyntheticData.genRandString(20)); // name
-            putUser.setString(3, SyntheticData.genRandString(35)); // description
+        long key = accountKeys.getAndIncrement();
+        try (PreparedStatement putUser = statements.prepare(connection, "PUT_ACCOUNT")) {
+            putUser.setString(1, Populator.getUrn(key)); // unique
+            putUser.setString(2, names.next()); // name
+            putUser.setString(3, descriptions.next()); // description
             putUser.execute();
         }
+        accounts.add(key);
     }
 
     private void createContainer(CloudContext context, Connection connection) throws SQLException {
         long time = System.currentTimeMillis();
         String urn = getRandUrn(context);
         if (urn != null) {
-            try (PreparedStatement countsPs = connection.prepareStatement(dialect.getProperty("GET_CONTAINER_COUNTS"))) {
+            try (PreparedStatement countsPs = statements.prepare(connection, "GET_CONTAINER_COUNTS")) {
                 countsPs.setString(1, urn);
                 try (ResultSet rs = countsPs.executeQuery()) {
                     if (rs.next()) {
@@ -72,7 +97,7 @@ public class CloudService extends AbstractService {
                         long permitted = rs.getLong(2);
                         long currently = rs.getLong(3);
                         if (currently < permitted) {
-                            try (PreparedStatement insertPs = connection.prepareStatement(dialect.getProperty("PUT_CONTAINER"))) {
+                            try (PreparedStatement insertPs = statements.prepare(connection, "PUT_CONTAINER")) {
                                 insertPs.setLong(1, accountId);
                                 insertPs.setString(2, genRandContainer(urn));
                                 insertPs.setTimestamp(3, new Timestamp(time));
@@ -89,7 +114,7 @@ public class CloudService extends AbstractService {
         long time = System.currentTimeMillis();
         String urn = getRandUrn(context);
         if (urn != null) {
-            try (PreparedStatement countsPs = connection.prepareStatement(dialect.getProperty("GET_CONTAINER_COUNTS"))) {
+            try (PreparedStatement countsPs = statements.prepare(connection, "GET_CONTAINER_COUNTS")) {
                 countsPs.setString(1, urn);
                 try (ResultSet rsContainerCounts = countsPs.executeQuery()) {
                     if (rsContainerCounts.next()) {
@@ -97,18 +122,18 @@ public class CloudService extends AbstractService {
                         long permitted = rsContainerCounts.getLong(2);
                         long currently = rsContainerCounts.getLong(3);
                         if (currently > 0) {
-                            try (PreparedStatement getContainerIdPs = connection.prepareStatement(dialect.getProperty("GET_RAND_CONTAINER"))) {
+                            try (PreparedStatement getContainerIdPs = statements.prepare(connection, "GET_RAND_CONTAINER")) {
                                 getContainerIdPs.setLong(1, accountId);
                                 try (ResultSet rsCid = getContainerIdPs.executeQuery()) {
                                     if (rsCid.next()) {
                                         long cId = rsContainerCounts.getLong(1);
-                                        try (PreparedStatement insertPs = connection.prepareStatement(dialect.getProperty("PUT_OBJECT"))) {
+                                        try (PreparedStatement insertPs = statements.prepare(connection, "PUT_OBJECT")) {
                                             insertPs.setLong(1, cId);
                                             insertPs.setString(2, SyntheticData.genRandUuid());
                                             insertPs.setTimestamp(3, new Timestamp(time));
-                                            insertPs.setLong(4, random.nextInt(Integer.MAX_VALUE));
+                                            insertPs.setLong(4, ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE));
                                             insertPs.setString(5, "application/binary");
-                                            insertPs.setString(6, Long.toHexString(random.nextLong()));
+                                            insertPs.setString(6, Long.toHexString(ThreadLocalRandom.current().nextLong()));
                                             insertPs.execute();
                                         }
                                     }
@@ -121,40 +146,60 @@ public class CloudService extends AbstractService {
         }
     }
 
-    private void calculateMeanObjectSize(Context context, Connection connection) throws SQLException {
-        try (PreparedStatement sizePs = connection.prepareStatement(dialect.getProperty("GET_OBJECT_SIZE"))) {
+    private void calculateMeanObjectSize(CloudContext context, Connection connection) throws SQLException {
+        context.tally.reset();
+        try (CursorSettings.Scope scope = context.cursor.begin(connection);
+             PreparedStatement sizePs = statements.prepare(connection, "GET_OBJECT_SIZE")) {
+            context.cursor.apply(sizePs);
             try (ResultSet sizeRs = sizePs.executeQuery()) {
-                sizeRs.setFetchSize(1000);
-                int size = 0;
-                double mean = 0;
+                Moments sizes = new Moments();
                 while (sizeRs.next()) {
-                    int curr = sizeRs.getInt(1);
-                    mean += (curr - mean) / size;
-                    ++size;
+                    sizes.add(sizeRs.getLong(1));
+                    context.tally.row();
+                    context.tally.bytes(8);
                 }
             }
         }
     }
 
+    private void calculatePartitionedObjectSize(CloudContext context) throws Exception {
+        context.tally.reset();
+        Moments sizes = partitionedScan.scan(context.cursor);
+        if (partitionedScan.getAggregate() == PartitionedScan.Aggregate.SERVER) {
+            // one row of count, sum and sum of squares per partition...
+            context.tally.rows(partitionedScan.getPartitions());
+            context.tally.bytes(3 * 8 * partitionedScan.getPartitions());
+        } else {
+            context.tally.rows(sizes.getCount());
+            context.tally.bytes(8 * sizes.getCount());
+        }
+    }
+
     private void listContainers(CloudContext context, Connection connection) throws SQLException {
+        context.tally.reset();
         String urn = getRandUrn(context);
         if (urn != null) {
-            try (PreparedStatement userIdPs = connection.prepareStatement(dialect.getProperty("GET_ACCOUNT_ID"))) {
+            try (PreparedStatement userIdPs = statements.prepare(connection, "GET_ACCOUNT_ID")) {
                 userIdPs.setString(1, urn);
                 try (ResultSet userIdResult = userIdPs.executeQuery()) {
                     if (userIdResult.next()) {
                         long accountId = userIdResult.getLong(1);
-                        try (PreparedStatement statement = connection.prepareStatement(dialect.getProperty("GET_CONTAINER_LIST"))) {
+                        try (CursorSettings.Scope scope = context.cursor.begin(connection);
+                             PreparedStatement statement = statements.prepare(connection, "GET_CONTAINER_LIST")) {
+                            context.cursor.apply(statement);
                             statement.setLong(1, accountId);
                             try (ResultSet rs = statement.executeQuery()) {
+                                final ScanMeters.Tally tally = context.tally;
                                 while (rs.next()) {
                                     rs.getLong(1); // id
-                                    rs.getString(2); // name
+                                    tally.text(rs.getString(2)); // name
                                     rs.getTimestamp(3);
                                     rs.getTimestamp(4);
                                     rs.getTimestamp(5); // status
                                     rs.getLong(6); // object count
                                     rs.getLong(7); // bytes used
+                                    tally.row();
+                                    tally.bytes(6 * 8);
                                 }
                             }
                         }
@@ -165,28 +210,34 @@ public class CloudService extends AbstractService {
     }
 
     private void listObjects(CloudContext context, Connection connection) throws SQLException {
+        context.tally.reset();
         String urn = getRandUrn(context);
         if (urn != null) {
-            try (PreparedStatement userIdPs = connection.prepareStatement(dialect.getProperty("GET_ACCOUNT_ID"))) {
+            try (PreparedStatement userIdPs = statements.prepare(connection, "GET_ACCOUNT_ID")) {
                 userIdPs.setString(1, urn);
                 try (ResultSet userIdResult = userIdPs.executeQuery()) {
                     if (userIdResult.next()) {
                         long accountId = userIdResult.getLong(1);
-                        try (PreparedStatement getContainerIdPs = connection.prepareStatement(dialect.getProperty("GET_RAND_CONTAINER"))) {
+                        try (PreparedStatement getContainerIdPs = statements.prepare(connection, "GET_RAND_CONTAINER")) {
                             getContainerIdPs.setLong(1, accountId);
                             try (ResultSet rsCid = getContainerIdPs.executeQuery()) {
                                 if (rsCid.next()) {
                                     long cId = rsCid.getLong(1);
-                                    try (PreparedStatement statement = connection.prepareStatement(dialect.getProperty("GET_OBJECT_LIST"))) {
+                                    try (CursorSettings.Scope scope = context.cursor.begin(connection);
+                                         PreparedStatement statement = statements.prepare(connection, "GET_OBJECT_LIST")) {
+                                        context.cursor.apply(statement);
                                         statement.setLong(1, cId);
                                         try (ResultSet rs = statement.executeQuery()) {
+                                            final ScanMeters.Tally tally = context.tally;
                                             while (rs.next()) {
                                                 rs.getLong(1); // id
-                                                rs.getString(2); // name
-                                                rs.getString(3); // metadata
+                                                tally.text(rs.getString(2)); // name
+                                                tally.text(rs.getString(3)); // metadata
                                                 rs.getLong(4); // size
-                                                rs.getString(5); // content_type
-                                                rs.getString(6); // etag
+                                                tally.text(rs.getString(5)); // content_type
+                                                tally.text(rs.getString(6)); // etag
+                                                tally.row();
+                                                tally.bytes(2 * 8);
                                             }
                                         }
                                     }
@@ -199,13 +250,13 @@ public class CloudService extends AbstractService {
         }
     }
 
-    private String getNextUrn(CloudContext context) {
-        return context.identity + ":" + context.counter.incrementAndGet();
-    }
-
+    /**
+     * Picks an account from all those populated or created by any worker,
+     * with the distribution of the current operation.
+     */
     private String getRandUrn(CloudContext context) {
-        int count = context.counter.intValue();
-        return count > 0 ? context.identity + ":" + random.nextInt(context.counter.intValue()) : null;
+        long key = accounts.sample(context.distribution);
+        return key >= 0 ? Populator.getUrn(key) : null;
     }
 
     private String genRandContainer(String urn) {
@@ -224,7 +275,9 @@ public class CloudService extends AbstractService {
 
         // operational state...
 
-        random = new Random();
+        int poolSize = getIntegerProperty(properties, "dash.data.pool.size", 4096);
+        names = SyntheticData.newStringPool(poolSize, 20);
+        descriptions = SyntheticData.newStringPool(poolSize, 35);
 
         // dialect and data sources...
 
@@ -234,57 +287,76 @@ public class CloudService extends AbstractService {
             throw new IllegalArgumentException("Invalid dialect.");
         }
 
-        retryPolicy = new SqlRetryPolicy<>(
-                new FixedInterval(1, 100),
-                new DataSourceContext());
+        statements = new StatementCache(dialect,
+                getBooleanProperty(properties, "dash.db.statement.cache.enabled", false),
+                getIntegerProperty(properties, "dash.db.statement.cache.size", 32),
+                metricRegistry);
+
+        retryPolicies = new RetryPolicyFactory(new DataSourceContext(),
+                getBooleanProperty(properties, "dash.db.connection.pinned", false));
+
+        // account keys, populated ones are numbered from zero and those
+        // created during a run from an offset unique to the run, random
+        // unless assigned when distributed...
+
+        String keysDir = properties.getProperty("dash.keys.dir");
+        accounts = keysDir == null ? KeyRegistry.create() : KeyRegistry.open(new File(keysDir, "cloud-accounts.keys"));
+        accountKeys = new AtomicLong(getLongProperty(properties, "dash.keys.origin",
+                ThreadLocalRandom.current().nextLong(1, 1L << 22) << 40));
 
+        Populator populator = new Populator(dialect, retryPolicies, properties, names, descriptions);
         if (!getBooleanProperty(properties, "dash.db.skip.init", false)) {
-            loadDataModel();
+            loadDataModel(properties);
+            accounts.clear();
+            populator.populate(accounts);
+        } else if (accounts.size() == 0) {
+            for (long key = 0; key < populator.getAccountCount(); key++) {
+                accounts.add(key);
+            }
         }
 
         // reporting services...
 
         mix = new Mix(properties);
         meters = new HashMap<>();
+        distributions = new HashMap<>();
+        cursors = new HashMap<>();
+        scans = new HashMap<>();
         for (Mix.Type type : mix) {
-            meters.put(type.getTag(), metricRegistry.timer(type.getTag()));
+            meters.put(type.getTag(), new OutcomeMeters(metricsService, type.getTag()));
+            distributions.put(type.getTag(), KeyDistributions.forTag(properties, type.getTag()));
+            if (SCAN_TAGS.contains(type.getTag())) {
+                cursors.put(type.getTag(), CursorSettings.forTag(properties, dialect, type.getTag()));
+                scans.put(type.getTag(), new ScanMeters(metricsService, type.getTag()));
+            }
+            if (type.getTag().equals("OLAP_P3")) {
+                partitionedScan = new PartitionedScan(statements, retryPolicies, properties);
+            }
         }
+        registerDriverMetrics(metricsService);
     }
 
-    private void loadDataModel() {
+    private void loadDataModel(Properties properties) {
         String sqlFile = dialect.getName() + "-dialect-install.sql";
-        try {
-            StringBuilder builder = Resources.loadResource(CloudService.class, sqlFile, new StringBuilder());
-
-            // n.b. a new sql script splitter that overcomes issues with
-            // existing ones online, and deficiencies in those hard-coded
-            // to work with only one database technology.
-            SqlScriptSplitter splitter = new SqlScriptSplitter();
-            final List<String> statements = splitter.splitStatements(builder.toString());
-
-            try {
-                retryPolicy.action(
-                        connection -> {
-                            for (String sql : statements) {
-                                try (Statement statement = connection.createStatement()) {
-                                    statement.execute(sql);
-                                }
-                            }
-                            return true;
-                        }
-                );
-            } catch (Exception e) {
-                throw new Error("Failed to setup cloud dash.database.", e);
-            }
+        // n.b. a new sql script splitter that overcomes issues with
+        // existing ones online, and deficiencies in those hard-coded
+        // to work with only one database technology; independent
+        // statements are run in parallel, each retried by itself.
+        SqlScriptRunner runner = new SqlScriptRunner(retryPolicies,
+                getIntegerProperty(properties, "dash.db.install.parallelism", 4));
+        try (Reader reader = Resources.openResource(CloudService.class, sqlFile)) {
+            runner.run(sqlFile, reader);
         } catch (IOException e) {
             throw new Error("Failed to find " + sqlFile + " on classpath.", e);
+        } catch (Exception e) {
+            throw new Error("Failed to setup cloud dash.database: " + Exceptions.toStringAllCauses(e), e);
         }
     }
 
     @Override
     public void start() throws Exception {
-        super.start();
         metricsService.start();
+        super.start();
     }
 
     @Override
@@ -300,6 +372,19 @@ public class CloudService extends AbstractService {
     @Override
     public void destroy() {
         super.destroy();
+        if (partitionedScan != null) {
+            partitionedScan.close();
+        }
+        if (retryPolicies != null) {
+            retryPolicies.close();
+        }
+        if (accounts != null) {
+            try {
+                accounts.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
     }
 
     // T H R E A D E D   S E R V I C E   I N T E R F A C E S
@@ -307,72 +392,81 @@ public class CloudService extends AbstractService {
     @Override
     protected void execute(Context context) {
         final CloudContext cloudContext = (CloudContext) context;
-        Mix.Type type = mix.next();
-        Timer timer = meters.get(type.getTag());
-        try (Timer.Context ignore = timer.time()) {
+        Mix.Type type = cloudContext.sampler.next();
+        OutcomeMeters outcomes = meters.get(type.getTag());
+        cloudContext.distribution = distributions.get(type.getTag());
+        cloudContext.cursor = cursors.get(type.getTag());
+        Exception failure = null;
+        try {
             switch (type.getTag()) {
                 case "OLTP_C1": {
-                    retryPolicy.action(connection -> {
+                    cloudContext.retryPolicy.action(connection -> {
                         createAccount(cloudContext, connection);
                         return true;
                     });
                 }
                 break;
                 case "OLTP_C2": {
-                    retryPolicy.action(connection -> {
+                    cloudContext.retryPolicy.action(connection -> {
                         createContainer(cloudContext, connection);
                         return true;
                     });
                 }
                 break;
                 case "OLTP_C3": {
-                    retryPolicy.action(connection -> {
+                    cloudContext.retryPolicy.action(connection -> {
                         createObject(cloudContext, connection);
                         return true;
                     });
                 }
                 break;
                 case "OLTP_R2": {
-                    retryPolicy.action(connection -> {
+                    cloudContext.retryPolicy.action(connection -> {
                         listContainers(cloudContext, connection);
                         return true;
                     });
                 }
                 break;
                 case "OLTP_R3": {
-                    retryPolicy.action(connection -> {
+                    cloudContext.retryPolicy.action(connection -> {
                         listObjects(cloudContext, connection);
                         return true;
                     });
                 }
                 break;
                 case "OLAP_R3": {
-                    retryPolicy.action(connection -> {
+                    cloudContext.retryPolicy.action(connection -> {
                         calculateMeanObjectSize(cloudContext, connection);
                         return true;
                     });
                 }
                 break;
+                case "OLAP_P3": {
+                    calculatePartitionedObjectSize(cloudContext);
+                }
+                break;
                 default: {
                     throw new Error("Unknown tag: " + type.getTag());
                 }
             }
+            ScanMeters scan = scans.get(type.getTag());
+            if (scan != null) {
+                scan.update(cloudContext.tally);
+            }
         } catch (Exception e) {
-            warn(e);
+            failure = e;
+        } finally {
+            recordOutcome(type, outcomes, failure);
         }
     }
 
     @Override
     protected Context createContext() {
-        return new CloudContext();
+        return new CloudContext(retryPolicies.newContextPolicy(), mix.newSampler());
     }
 
     // U T I L I T I E S
 
-    private void warn(Exception re) {
-        System.err.println(Exceptions.toStringAllCauses(re));
-    }
-
     protected int getThreadCount() {
         return super.getThreadCount();
     }
@@ -0,0 +1,226 @@
+package com.github.rbuck.dash.services.cloud;
+
+import com.github.rbuck.dash.common.CursorSettings;
+import com.github.rbuck.dash.common.Moments;
+import com.github.rbuck.dash.common.RetryPolicyFactory;
+import com.github.rbuck.dash.common.StatementCache;
+import com.github.rbuck.retry.SqlRetryPolicy;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.rbuck.dash.common.Preconditions.checkArgument;
+import static com.github.rbuck.dash.common.PropertiesHelper.getIntegerProperty;
+
+/**
+ * Aggregates the sizes of all objects by scanning id-range partitions of the
+ * object table concurrently, each on a connection of its own.
+ * <p/>
+ * The range of object ids is split in halves, recursively, on a fork/join
+ * pool until there is one range per partition; each range is then scanned
+ * in its own transaction, retried by itself should it fail transiently, and
+ * the count, sum, mean and variance of each merged as the halves join. With
+ * client aggregation every size is fetched and accumulated by the driver,
+ * as the serial OLAP_R3 scan does; with server aggregation each partition
+ * fetches just its count, sum and sum of squares, so the two may be
+ * compared to measure the cost of moving rows rather than aggregates.
+ * <p/>
+ * Each scan holds up to as many pooled connections at once as the pool has
+ * threads, in addition to the one of the operation, so the connection pool
+ * must be sized for the driver threads times the parallelism. Retries of
+ * partitions are made on the pool threads, and so are not counted in the
+ * retries of the operation.
+ */
+public class PartitionedScan implements AutoCloseable {
+
+    private static final String PARTITIONS = "dash.scan.partitions";
+    private static final String PARALLELISM = "dash.scan.parallelism";
+    private static final String AGGREGATE = "dash.scan.aggregate";
+
+    /**
+     * Where partitions are aggregated.
+     */
+    public enum Aggregate {
+        CLIENT,
+        SERVER
+    }
+
+    private final StatementCache statements;
+    private final RetryPolicyFactory retryPolicies;
+    private final int partitions;
+    private final Aggregate aggregate;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a partitioned scan.
+     *
+     * @param statements    the cache the cloud statements are prepared from
+     * @param retryPolicies the factory of policies partitions are scanned with
+     * @param properties    the scan configuration
+     */
+    public PartitionedScan(StatementCache statements, RetryPolicyFactory retryPolicies, Properties properties) {
+        this.statements = statements;
+        this.retryPolicies = retryPolicies;
+        this.partitions = getIntegerProperty(properties, PARTITIONS, 4);
+        int parallelism = getIntegerProperty(properties, PARALLELISM, partitions);
+        checkArgument(partitions > 0, "The " + PARTITIONS + " property (" +
+                partitions + ") is not greater than zero; please fix your property declaration.");
+        checkArgument(parallelism > 0, "The " + PARALLELISM + " property (" +
+                parallelism + ") is not greater than zero; please fix your property declaration.");
+        this.aggregate = parseAggregate(properties.getProperty(AGGREGATE, "client"));
+        final AtomicInteger sequence = new AtomicInteger();
+        this.pool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("dash-scan-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    private static Aggregate parseAggregate(String aggregate) {
+        switch (aggregate.trim().toLowerCase(Locale.ROOT)) {
+            case "client":
+                return Aggregate.CLIENT;
+            case "server":
+                return Aggregate.SERVER;
+            default:
+                throw new IllegalArgumentException("The " + AGGREGATE + " property (" + aggregate +
+                        ") is not one of client or server; please fix your property declaration.");
+        }
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public Aggregate getAggregate() {
+        return aggregate;
+    }
+
+    /**
+     * Scans the sizes of all objects.
+     *
+     * @param cursor the cursor settings partitions are fetched with
+     * @return the moments of the sizes of all objects
+     * @throws Exception if a partition failed after retrying
+     */
+    public Moments scan(CursorSettings cursor) throws Exception {
+        SqlRetryPolicy<long[]> rangePolicy = retryPolicies.newPooledPolicy();
+        long[] range = rangePolicy.action(this::getIdRange);
+        if (range == null) {
+            return new Moments();
+        }
+        try {
+            return pool.invoke(new Partition(cursor, range[0], range[1] + 1, partitions));
+        } catch (CompletionException e) {
+            Throwable cause = e;
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * Get the least and greatest object id, or null if there are no objects.
+     */
+    private long[] getIdRange(Connection connection) throws SQLException {
+        try (PreparedStatement rangePs = statements.prepare(connection, "GET_OBJECT_ID_RANGE")) {
+            try (ResultSet rangeRs = rangePs.executeQuery()) {
+                if (rangeRs.next()) {
+                    long min = rangeRs.getLong(1);
+                    if (!rangeRs.wasNull()) {
+                        return new long[]{min, rangeRs.getLong(2)};
+                    }
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Scans the objects with ids from low, inclusive, to high, exclusive.
+     */
+    private Moments scanRange(Connection connection, CursorSettings cursor, long low, long high) throws SQLException {
+        if (aggregate == Aggregate.SERVER) {
+            try (PreparedStatement statsPs = statements.prepare(connection, "GET_OBJECT_SIZE_STATS_RANGE")) {
+                statsPs.setLong(1, low);
+                statsPs.setLong(2, high);
+                try (ResultSet statsRs = statsPs.executeQuery()) {
+                    return statsRs.next() ?
+                            Moments.of(statsRs.getLong(1), statsRs.getDouble(2), statsRs.getDouble(3)) : new Moments();
+                }
+            }
+        }
+        try (CursorSettings.Scope scope = cursor.begin(connection);
+             PreparedStatement sizePs = statements.prepare(connection, "GET_OBJECT_SIZE_RANGE")) {
+            cursor.apply(sizePs);
+            sizePs.setLong(1, low);
+            sizePs.setLong(2, high);
+            try (ResultSet sizeRs = sizePs.executeQuery()) {
+                Moments moments = new Moments();
+                while (sizeRs.next()) {
+                    long size = sizeRs.getLong(1);
+                    if (!sizeRs.wasNull()) {
+                        moments.add(size);
+                    }
+                }
+                return moments;
+            }
+        }
+    }
+
+    /**
+     * Shuts the pool down.
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Scans a range of ids split into the designated count of partitions.
+     */
+    private class Partition extends RecursiveTask<Moments> {
+
+        private final CursorSettings cursor;
+        private final long low;
+        private final long high;
+        private final int partitions;
+
+        Partition(CursorSettings cursor, long low, long high, int partitions) {
+            this.cursor = cursor;
+            this.low = low;
+            this.high = high;
+            this.partitions = partitions;
+        }
+
+        @Override
+        protected Moments compute() {
+            if (partitions == 1 || high - low < 2) {
+                SqlRetryPolicy<Moments> retryPolicy = retryPolicies.newPooledPolicy();
+                try {
+                    return retryPolicy.action(connection -> scanRange(connection, cursor, low, high));
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }
+            int half = partitions / 2;
+            long split = low + (long) ((double) (high - low) * half / partitions);
+            split = Math.max(low + 1, Math.min(high - 1, split));
+            Partition left = new Partition(cursor, low, split, half);
+            left.fork();
+            Moments right = new Partition(cursor, split, high, partitions - half).compute();
+            return left.join().merge(right);
+        }
+    }
+}
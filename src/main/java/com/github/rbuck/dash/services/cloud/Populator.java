@@ -0,0 +1,271 @@
+package com.github.rbuck.dash.services.cloud;
+
+import com.github.rbuck.dash.common.Dialect;
+import com.github.rbuck.dash.common.Exceptions;
+import com.github.rbuck.dash.common.KeyRegistry;
+import com.github.rbuck.dash.common.RetryPolicyFactory;
+import com.github.rbuck.dash.common.SyntheticData;
+import com.github.rbuck.retry.SqlRetryPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.rbuck.dash.common.Preconditions.checkArgument;
+import static com.github.rbuck.dash.common.PropertiesHelper.getIntegerProperty;
+
+/**
+ * Populates the cloud data model before a run, scaled by a scale factor.
+ * <p/>
+ * Each unit of scale is a thousand accounts, each with a configured count
+ * of containers (at most as many as the account permits) each holding a
+ * configured count of objects. Accounts are distributed across a pool of
+ * loader threads; every account, its containers and its objects are loaded
+ * in one transaction using batched inserts, and retried as a whole should
+ * it fail. Populated accounts have well known urns, so a later run may
+ * sample them even when it skips population.
+ */
+public class Populator {
+
+    private static Logger logger = LoggerFactory.getLogger(Populator.class);
+
+    static final int ACCOUNTS_PER_SCALE = 1000;
+    private static final String URN_PREFIX = "account:";
+    private static final int PROGRESS_PERIOD = 5;
+
+    private final Dialect dialect;
+    private final RetryPolicyFactory retryPolicies;
+    private final SyntheticData.StringPool names;
+    private final SyntheticData.StringPool descriptions;
+    private final int scaleFactor;
+    private final int containers;
+    private final int objects;
+    private final int threads;
+    private final int batchSize;
+
+    /**
+     * Creates a populator.
+     *
+     * @param dialect       the dialect declaring the cloud statements
+     * @param retryPolicies the factory of policies accounts are loaded with
+     * @param properties    the population configuration
+     * @param names         the pool account names are drawn from
+     * @param descriptions  the pool account descriptions are drawn from
+     */
+    public Populator(Dialect dialect, RetryPolicyFactory retryPolicies, Properties properties,
+                     SyntheticData.StringPool names, SyntheticData.StringPool descriptions) {
+        this.dialect = dialect;
+        this.retryPolicies = retryPolicies;
+        this.names = names;
+        this.descriptions = descriptions;
+        this.scaleFactor = getIntegerProperty(properties, "dash.db.scale.factor", 0);
+        this.containers = getIntegerProperty(properties, "dash.db.scale.containers", 10);
+        this.objects = getIntegerProperty(properties, "dash.db.scale.objects", 100);
+        this.threads = getIntegerProperty(properties, "dash.db.scale.threads", Runtime.getRuntime().availableProcessors());
+        this.batchSize = getIntegerProperty(properties, "dash.db.scale.batch.size", 1000);
+
+        checkArgument(scaleFactor >= 0, "Scale factor must be greater than or equal to zero");
+        checkArgument(containers >= 0, "Scale containers must be greater than or equal to zero");
+        checkArgument(objects >= 0, "Scale objects must be greater than or equal to zero");
+        checkArgument(threads > 0, "Scale threads must be greater than zero");
+        checkArgument(batchSize > 0, "Scale batch size must be greater than zero");
+    }
+
+    /**
+     * Get the count of accounts the scale factor populates.
+     *
+     * @return the account count
+     */
+    public int getAccountCount() {
+        return scaleFactor * ACCOUNTS_PER_SCALE;
+    }
+
+    /**
+     * Get the urn of an account.
+     *
+     * @param account the account key; populated accounts are numbered from
+     *                zero to the account count
+     * @return the account urn
+     */
+    public static String getUrn(long account) {
+        return URN_PREFIX + account;
+    }
+
+    /**
+     * Populates all accounts, containers and objects.
+     *
+     * @param registry the registry the keys of accounts are added to once loaded
+     * @throws Error if an account fails to load after retrying
+     */
+    public void populate(KeyRegistry registry) {
+        final int accounts = getAccountCount();
+        if (accounts == 0) {
+            return;
+        }
+        final AtomicLong loadedAccounts = new AtomicLong();
+        final AtomicLong loadedObjects = new AtomicLong();
+        final AtomicInteger sequence = new AtomicInteger();
+        final long begin = System.nanoTime();
+
+        ExecutorService loaders = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "dash-populate-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dash-populate-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(new Runnable() {
+            private long last = 0;
+            private long lastTime = begin;
+
+            @Override
+            public void run() {
+                long rows = loadedObjects.get();
+                long now = System.nanoTime();
+                logger.info(String.format("Populating: %d of %d accounts, %d objects, %.0f objects/sec",
+                        loadedAccounts.get(), accounts, rows, (rows - last) * 1e9 / Math.max(1, now - lastTime)));
+                last = rows;
+                lastTime = now;
+            }
+        }, PROGRESS_PERIOD, PROGRESS_PERIOD, TimeUnit.SECONDS);
+
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int account = 0; account < accounts; account++) {
+                final int key = account;
+                futures.add(loaders.submit(() -> {
+                    loadedObjects.addAndGet(populateAccount(getUrn(key)));
+                    registry.add(key);
+                    loadedAccounts.incrementAndGet();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Error("Interrupted while populating the cloud database.", e);
+        } catch (ExecutionException e) {
+            throw new Error("Failed to populate the cloud database: " +
+                    Exceptions.toStringAllCauses(e.getCause()), e.getCause());
+        } finally {
+            reporter.shutdownNow();
+            loaders.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        logger.info(String.format("Populated %d accounts and %d objects in %.1f sec, %.0f objects/sec",
+                loadedAccounts.get(), loadedObjects.get(), seconds, loadedObjects.get() / Math.max(seconds, 1e-9)));
+    }
+
+    /**
+     * Loads one account with its containers and objects in one transaction.
+     *
+     * @return the count of objects loaded
+     */
+    private long populateAccount(String urn) throws Exception {
+        SqlRetryPolicy<Long> retryPolicy = retryPolicies.newPooledPolicy();
+        return retryPolicy.action(connection -> {
+            final boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                long count = populateAccount(connection, urn);
+                connection.commit();
+                return count;
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException ignored) {
+                    // the original failure is the one reported
+                }
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    private long populateAccount(Connection connection, String urn) throws SQLException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        try (PreparedStatement statement = connection.prepareStatement(dialect.getProperty("PUT_ACCOUNT"))) {
+            statement.setString(1, urn);
+            statement.setString(2, names.next());
+            statement.setString(3, descriptions.next());
+            statement.execute();
+        }
+
+        long accountId;
+        long permitted;
+        try (PreparedStatement statement = connection.prepareStatement(dialect.getProperty("GET_CONTAINER_COUNTS"))) {
+            statement.setString(1, urn);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Populated account " + urn + " not found.");
+                }
+                accountId = rs.getLong(1);
+                permitted = rs.getLong(2) - rs.getLong(3);
+            }
+        }
+
+        final long containerCount = Math.min(containers, permitted);
+        if (containerCount <= 0) {
+            return 0;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(dialect.getProperty("PUT_CONTAINER"))) {
+            for (int i = 0; i < containerCount; i++) {
+                statement.setLong(1, accountId);
+                statement.setString(2, urn + ":" + SyntheticData.genRandUuid());
+                statement.setTimestamp(3, now);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+
+        List<Long> containerIds = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(dialect.getProperty("GET_CONTAINER_IDS"))) {
+            statement.setLong(1, accountId);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    containerIds.add(rs.getLong(1));
+                }
+            }
+        }
+
+        long count = 0;
+        try (PreparedStatement statement = connection.prepareStatement(dialect.getProperty("PUT_OBJECT"))) {
+            int batched = 0;
+            for (long containerId : containerIds) {
+                for (int i = 0; i < objects; i++) {
+                    statement.setLong(1, containerId);
+                    statement.setString(2, SyntheticData.genRandUuid());
+                    statement.setTimestamp(3, now);
+                    statement.setLong(4, random.nextInt(Integer.MAX_VALUE));
+                    statement.setString(5, "application/binary");
+                    statement.setString(6, Long.toHexString(random.nextLong()));
+                    statement.addBatch();
+                    if (++batched == batchSize) {
+                        statement.executeBatch();
+                        batched = 0;
+                    }
+                    count++;
+                }
+            }
+            if (batched > 0) {
+                statement.executeBatch();
+            }
+        }
+        return count;
+    }
+}
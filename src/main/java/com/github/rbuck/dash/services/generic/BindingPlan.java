@@ -0,0 +1,297 @@
+package com.github.rbuck.dash.services.generic;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The compiled parameter bindings of a statement.
+ * <p/>
+ * Parameter templates are declared as a list of mustache expressions, e.g.
+ * <pre>
+ *     QUERY1.parameters={{42}}{{sqldate.date('2000/01/01','2020/12/31')}}
+ * </pre>
+ * Each expression is either a literal, bound as is, or a data generator
+ * function invocation. The template is parsed once into invocations whose
+ * functions and arguments are fully resolved, so binding a statement only
+ * calls the generator functions, and an unknown function is rejected when
+ * the template is compiled; nested invocations are evaluated innermost
+ * first. Plans are immutable and may be shared across threads.
+ */
+public final class BindingPlan {
+
+    private static final Pattern MUSTACHE_PATTERN = Pattern.compile("\\{\\{([^}]+)}}");
+
+    private static final BindingPlan EMPTY = new BindingPlan(new Binding[0]);
+
+    private final Binding[] bindings;
+
+    private BindingPlan(Binding[] bindings) {
+        this.bindings = bindings;
+    }
+
+    /**
+     * Compiles a parameter template.
+     *
+     * @param template the mustache parameter template, may be null if the
+     *                 statement has no parameters
+     * @return the binding plan
+     * @throws IllegalArgumentException if an expression is malformed, or
+     *                                  invokes an unknown function
+     */
+    public static BindingPlan compile(String template) {
+        return compile("parameter", template);
+    }
+
+    /**
+     * Compiles the parameter template a property declares.
+     *
+     * @param property the name of the property, reported should the template
+     *                 be invalid
+     * @param template the mustache parameter template, may be null if the
+     *                 statement has no parameters
+     * @return the binding plan
+     * @throws IllegalArgumentException if an expression is malformed, or
+     *                                  invokes an unknown function
+     */
+    public static BindingPlan compile(String property, String template) {
+        if (template == null) {
+            return EMPTY;
+        }
+        List<Binding> bindings = new ArrayList<>();
+        Matcher m = MUSTACHE_PATTERN.matcher(template);
+        while (m.find()) {
+            bindings.add(parse(property, m.group(1)));
+        }
+        return new BindingPlan(bindings.toArray(new Binding[bindings.size()]));
+    }
+
+    /**
+     * Get the count of parameters bound.
+     *
+     * @return the parameter count
+     */
+    public int size() {
+        return bindings.length;
+    }
+
+    /**
+     * Evaluate one parameter.
+     *
+     * @param index the zero-based parameter index
+     * @return the parameter value
+     */
+    public String value(int index) {
+        return bindings[index].value();
+    }
+
+    /**
+     * Binds freshly evaluated values to all statement parameters.
+     *
+     * @param statement the statement to bind
+     * @throws SQLException if a parameter could not be set
+     */
+    public void bind(PreparedStatement statement) throws SQLException {
+        for (int i = 0; i < bindings.length; i++) {
+            statement.setString(i + 1, bindings[i].value());
+        }
+    }
+
+    // P A R S I N G
+
+    static Binding parse(String expression) {
+        return parse("parameter", expression);
+    }
+
+    private static Binding parse(String property, String expression) {
+        if (expression.indexOf('(') == -1) {
+            return new Literal(expression);
+        }
+        Parser parser = new Parser(property, expression);
+        Binding binding = parser.argument();
+        parser.skipWhitespace();
+        if (!parser.done()) {
+            throw parser.error("unexpected trailing input");
+        }
+        return binding;
+    }
+
+    /**
+     * A recursive descent parser for the generator function syntax:
+     * <pre>
+     *     invocation := name '(' [ argument { ',' argument } ] ')'
+     *     argument   := quoted | invocation | bare
+     * </pre>
+     */
+    private static class Parser {
+
+        private final String property;
+        private final String expression;
+        private int position;
+
+        Parser(String property, String expression) {
+            this.property = property;
+            this.expression = expression;
+        }
+
+        boolean done() {
+            return position >= expression.length();
+        }
+
+        char peek() {
+            return expression.charAt(position);
+        }
+
+        void skipWhitespace() {
+            while (!done() && Character.isWhitespace(peek())) {
+                position++;
+            }
+        }
+
+        Binding argument() {
+            skipWhitespace();
+            if (done()) {
+                throw error("expected an argument");
+            }
+            char c = peek();
+            if (c == '\'' || c == '"') {
+                return new Literal(quoted(c));
+            }
+            int start = position;
+            while (!done() && peek() != '(' && peek() != ',' && peek() != ')') {
+                position++;
+            }
+            String token = expression.substring(start, position).trim();
+            if (!done() && peek() == '(') {
+                if (token.isEmpty()) {
+                    throw error("expected a function name");
+                }
+                position++;
+                return invocation(token);
+            }
+            return new Literal(token);
+        }
+
+        private Binding invocation(String name) {
+            List<Binding> arguments = new ArrayList<>();
+            skipWhitespace();
+            if (!done() && peek() == ')') {
+                position++;
+            } else {
+                while (true) {
+                    arguments.add(argument());
+                    skipWhitespace();
+                    if (done()) {
+                        throw error("expected ')'");
+                    }
+                    char c = expression.charAt(position++);
+                    if (c == ')') {
+                        break;
+                    }
+                    if (c != ',') {
+                        throw error("expected ',' or ')'");
+                    }
+                }
+            }
+            try {
+                return new Invocation(name, arguments.toArray(new Binding[arguments.size()]));
+            } catch (IllegalArgumentException e) {
+                throw error(e.getMessage());
+            }
+        }
+
+        private String quoted(char quote) {
+            StringBuilder builder = new StringBuilder();
+            position++;
+            while (!done()) {
+                char c = expression.charAt(position++);
+                if (c == '\\' && !done()) {
+                    builder.append(expression.charAt(position++));
+                } else if (c == quote) {
+                    return builder.toString();
+                } else {
+                    builder.append(c);
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        IllegalArgumentException error(String reason) {
+            return new IllegalArgumentException("The " + property + " expression (" + expression + ") is invalid, " +
+                    reason + " at position " + position + "; please fix your property declaration.");
+        }
+    }
+
+    // B I N D I N G S
+
+    interface Binding {
+        String value();
+    }
+
+    static final class Literal implements Binding {
+
+        private final String value;
+
+        Literal(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String value() {
+            return value;
+        }
+    }
+
+    static final class Invocation implements Binding {
+
+        private final String name;
+        private final Functions.Handle function;
+        private final Binding[] arguments;
+        private final String[] constants;
+
+        /**
+         * @throws IllegalArgumentException if there is no function of the
+         *                                  name taking as many arguments
+         */
+        Invocation(String name, Binding[] arguments) {
+            this.name = name;
+            this.function = Functions.resolve(name, arguments.length);
+            this.arguments = arguments;
+            boolean constant = true;
+            for (Binding argument : arguments) {
+                constant &= argument instanceof Literal;
+            }
+            this.constants = constant ? evaluate(arguments) : null;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        Binding[] getArguments() {
+            return arguments;
+        }
+
+        private static String[] evaluate(Binding[] arguments) {
+            String[] values = new String[arguments.length];
+            for (int i = 0; i < arguments.length; i++) {
+                values[i] = arguments[i].value();
+            }
+            return values;
+        }
+
+        @Override
+        public String value() {
+            try {
+                return function.invoke(constants != null ? constants : evaluate(arguments));
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Failed to invoke function " + name + ".", t);
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.github.rbuck.dash.services.generic;
+
+import com.github.rbuck.dash.common.functions.*;
+import com.github.vincentrussell.json.datagenerator.functions.Function;
+import com.github.vincentrussell.json.datagenerator.functions.FunctionInvocation;
+import com.github.vincentrussell.json.datagenerator.functions.FunctionRegistry;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * The data generator functions parameter templates may invoke, resolved to
+ * method handles bound to one instance of each function class.
+ * <p/>
+ * A function class is annotated with the names it is invoked by, and each
+ * of its invocation methods is invoked as {@code <name>.<method>}, or by the
+ * name alone when the method is named alike, e.g. {@code sqldate.date} and
+ * {@code zipfian}. The functions of Dash and those bundled with the
+ * json-data-generator library are registered up front, the latter found by
+ * their annotations as the library registry does, so that an invocation can
+ * be resolved once when a template is compiled rather than by name each time
+ * it is evaluated.
+ */
+final class Functions {
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(String.class, String[].class);
+
+    private static final Map<String, Handle[]> functions = new ConcurrentHashMap<>();
+
+    private static final MethodHandle SPLIT;
+
+    static {
+        try {
+            SPLIT = MethodHandles.lookup().findStatic(Functions.class, "split",
+                    MethodType.methodType(Object[].class, String[].class, int.class));
+        } catch (ReflectiveOperationException e) {
+            throw new Error(e);
+        }
+        registerBundled();
+        register(SqlDate.class);
+        register(Zipfian.class);
+        register(ScrambledZipfian.class);
+        register(Latest.class);
+        register(Hotspot.class);
+        register(Exponential.class);
+    }
+
+    private Functions() {
+    }
+
+    /**
+     * A function invocation method, bound to its instance.
+     */
+    static final class Handle {
+
+        private final MethodHandle invoker;
+        private final int arity;
+        private final boolean variadic;
+
+        private Handle(MethodHandle invoker, int arity, boolean variadic) {
+            this.invoker = invoker;
+            this.arity = arity;
+            this.variadic = variadic;
+        }
+
+        /**
+         * Invokes the function.
+         *
+         * @param arguments the argument values
+         * @return the result
+         * @throws Throwable whatever the function throws
+         */
+        String invoke(String[] arguments) throws Throwable {
+            return (String) invoker.invokeExact(arguments);
+        }
+
+        private boolean accepts(int count) {
+            return variadic ? count >= arity : count == arity;
+        }
+    }
+
+    /**
+     * Registers the invocation methods of a function class, replacing any
+     * registered under the same names.
+     *
+     * @param type the function class
+     * @throws IllegalArgumentException if the class is not a function, or
+     *                                  cannot be instantiated
+     */
+    static void register(Class<?> type) {
+        Function annotation = type.getAnnotation(Function.class);
+        if (annotation == null) {
+            throw new IllegalArgumentException("The class " + type.getName() + " is not a function.");
+        }
+        Object instance;
+        try {
+            instance = type.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Failed to instantiate function " + type.getName() + ".", e);
+        }
+        Map<String, List<Handle>> methods = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            if (!method.isAnnotationPresent(FunctionInvocation.class) || !isInvocable(method)) {
+                continue;
+            }
+            Handle handle = bind(method, instance);
+            for (String name : annotation.name()) {
+                methods.computeIfAbsent(name + "." + method.getName(), key -> new ArrayList<>()).add(handle);
+                if (name.equals(method.getName())) {
+                    methods.computeIfAbsent(name, key -> new ArrayList<>()).add(handle);
+                }
+            }
+        }
+        for (Map.Entry<String, List<Handle>> entry : methods.entrySet()) {
+            // fixed arities first, so they are preferred to variadic methods...
+            entry.getValue().sort(Comparator.comparing(handle -> handle.variadic));
+            functions.put(entry.getKey(), entry.getValue().toArray(new Handle[0]));
+        }
+    }
+
+    /**
+     * Resolves the invocation method of a function taking a number of
+     * arguments.
+     *
+     * @param name  the function name
+     * @param count the count of arguments
+     * @return the bound invocation method
+     * @throws IllegalArgumentException if there is no such function
+     */
+    static Handle resolve(String name, int count) {
+        Handle[] candidates = functions.get(name);
+        if (candidates == null) {
+            throw new IllegalArgumentException("there is no function named " + name);
+        }
+        for (Handle candidate : candidates) {
+            if (candidate.accepts(count)) {
+                return candidate;
+            }
+        }
+        throw new IllegalArgumentException("the function " + name + " takes no " + count + " arguments");
+    }
+
+    private static boolean isInvocable(Method method) {
+        if (Modifier.isStatic(method.getModifiers()) || method.getReturnType() != String.class) {
+            return false;
+        }
+        Class<?>[] parameters = method.getParameterTypes();
+        for (int i = 0; i < parameters.length; i++) {
+            boolean variadic = method.isVarArgs() && i == parameters.length - 1;
+            if (parameters[i] != (variadic ? String[].class : String.class)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Handle bind(Method method, Object instance) {
+        try {
+            MethodHandle target = MethodHandles.publicLookup().unreflect(method).bindTo(instance).asFixedArity();
+            int count = method.getParameterCount();
+            if (method.isVarArgs()) {
+                // leading arguments are spread, the rest collected into the trailing array...
+                int fixed = count - 1;
+                MethodHandle split = MethodHandles.insertArguments(SPLIT, 1, fixed);
+                MethodHandle spread = target.asSpreader(Object[].class, count);
+                return new Handle(MethodHandles.filterArguments(spread, 0, split).asType(INVOKER_TYPE), fixed, true);
+            }
+            return new Handle(target.asSpreader(String[].class, count).asType(INVOKER_TYPE), count, false);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Failed to bind function " + method + ".", e);
+        }
+    }
+
+    /**
+     * Splits arguments into the leading ones and an array of the rest.
+     */
+    private static Object[] split(String[] arguments, int fixed) {
+        Object[] split = new Object[fixed + 1];
+        System.arraycopy(arguments, 0, split, 0, fixed);
+        split[fixed] = Arrays.copyOfRange(arguments, fixed, arguments.length);
+        return split;
+    }
+
+    /**
+     * Registers the function classes bundled in the library jar.
+     */
+    private static void registerBundled() {
+        CodeSource source = FunctionRegistry.class.getProtectionDomain().getCodeSource();
+        if (source == null) {
+            return;
+        }
+        String root = FunctionRegistry.class.getPackage().getName().replace('.', '/') + "/";
+        List<String> classes = new ArrayList<>();
+        try {
+            File location = new File(source.getLocation().toURI());
+            if (location.isDirectory()) {
+                list(new File(location, root), root, classes);
+            } else {
+                try (JarFile jar = new JarFile(location)) {
+                    for (JarEntry entry : Collections.list(jar.entries())) {
+                        if (entry.getName().startsWith(root)) {
+                            classes.add(entry.getName());
+                        }
+                    }
+                }
+            }
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            return;
+        }
+        ClassLoader loader = FunctionRegistry.class.getClassLoader();
+        for (String name : classes) {
+            if (!name.endsWith(".class") || name.indexOf('$') != -1) {
+                continue;
+            }
+            try {
+                Class<?> type = Class.forName(name.substring(0, name.length() - 6).replace('/', '.'), false, loader);
+                if (type.isAnnotationPresent(Function.class) &&
+                        Modifier.isPublic(type.getModifiers()) && !Modifier.isAbstract(type.getModifiers())) {
+                    register(type);
+                }
+            } catch (ClassNotFoundException | LinkageError | IllegalArgumentException e) {
+                // not a usable function...
+            }
+        }
+    }
+
+    private static void list(File directory, String path, List<String> classes) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    list(file, path + file.getName() + "/", classes);
+                } else {
+                    classes.add(path + file.getName());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.github.rbuck.dash.services.generic;
+
+import com.github.rbuck.dash.common.Dialect;
+import com.github.rbuck.dash.common.Exceptions;
+import com.github.rbuck.dash.common.RetryPolicyFactory;
+import com.github.rbuck.retry.SqlRetryPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.rbuck.dash.common.Preconditions.checkArgument;
+import static com.github.rbuck.dash.common.PropertiesHelper.*;
+
+/**
+ * Bulk loads synthetic rows before a run.
+ * <p/>
+ * Each preload tag names a dialect statement and parameter template, as do
+ * workload tags, and is loaded with the cardinality at the same position:
+ * <pre>
+ *     dash.preload.tags=[ACCOUNTS,ORDERS]
+ *     dash.preload.cardinalities=[1000000,250000000]
+ * </pre>
+ * Tags are loaded one after the other, in declaration order, so later ones
+ * may depend upon earlier ones. The rows of a tag are split into partitions
+ * of a commit interval's worth of batches, which a pool of loader threads
+ * insert in parallel. Each partition is a single transaction, so should it
+ * fail it is rolled back and retried as a whole. Progress is logged
+ * periodically in rows per second.
+ */
+public class Preloader {
+
+    private static Logger logger = LoggerFactory.getLogger(Preloader.class);
+
+    private final Dialect dialect;
+    private final RetryPolicyFactory retryPolicies;
+    private final String[] tags;
+    private final int[] cardinalities;
+    private final int threads;
+    private final int batchSize;
+    private final int commitInterval;
+    private final int period;
+
+    /**
+     * Creates a preloader.
+     *
+     * @param dialect       the dialect declaring the preload statements
+     * @param retryPolicies the factory of policies partitions are loaded with
+     * @param properties    the preload configuration
+     */
+    public Preloader(Dialect dialect, RetryPolicyFactory retryPolicies, Properties properties) {
+        this.dialect = dialect;
+        this.retryPolicies = retryPolicies;
+        if (properties.getProperty("dash.preload.tags") == null) {
+            this.tags = new String[0];
+            this.cardinalities = new int[0];
+        } else {
+            this.tags = getStringArrayProperty(properties, "dash.preload.tags", new String[0]);
+            this.cardinalities = getIntegerArrayProperty(properties, "dash.preload.cardinalities", new int[0]);
+        }
+        this.threads = getIntegerProperty(properties, "dash.preload.threads", Runtime.getRuntime().availableProcessors());
+        this.batchSize = getIntegerProperty(properties, "dash.preload.batch.size", 1000);
+        this.commitInterval = getIntegerProperty(properties, "dash.preload.commit.interval", 10);
+        this.period = getIntegerProperty(properties, "dash.preload.progress.period", 5);
+
+        checkArgument(tags.length == cardinalities.length, "Preload statement count must equal preload cardinalities");
+        for (int cardinality : cardinalities) {
+            checkArgument(cardinality >= 0, "Preload cardinalities values must be greater than or equal to zero");
+        }
+        checkArgument(threads > 0, "Preload threads must be greater than zero");
+        checkArgument(batchSize > 0, "Preload batch size must be greater than zero");
+        checkArgument(commitInterval > 0, "Preload commit interval must be greater than zero");
+        checkArgument(period > 0, "Preload progress period must be greater than zero");
+    }
+
+    /**
+     * Determine if any tags are to be preloaded.
+     *
+     * @return true if there is anything to load
+     */
+    public boolean isEnabled() {
+        return tags.length > 0;
+    }
+
+    /**
+     * Loads all preload tags.
+     *
+     * @throws Error if a partition fails to load after retrying
+     */
+    public void load() {
+        final AtomicInteger sequence = new AtomicInteger();
+        ExecutorService loaders = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "dash-preload-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dash-preload-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int i = 0; i < tags.length; i++) {
+                load(loaders, reporter, tags[i], cardinalities[i]);
+            }
+        } finally {
+            reporter.shutdownNow();
+            loaders.shutdownNow();
+        }
+    }
+
+    private void load(ExecutorService loaders, ScheduledExecutorService reporter, String tag, int cardinality) {
+        final String sql = dialect.getProperty(tag + ".statement");
+        checkArgument(sql != null, "The preload tag (" + tag + ") has no statement declared; please fix your property declaration.");
+        final BindingPlan plan = BindingPlan.compile(tag + ".parameters", dialect.getProperty(tag + ".parameters"));
+        final AtomicLong loaded = new AtomicLong();
+        final long begin = System.nanoTime();
+
+        ScheduledFuture<?> progress = reporter.scheduleAtFixedRate(new Runnable() {
+            private long last = 0;
+            private long lastTime = begin;
+
+            @Override
+            public void run() {
+                long rows = loaded.get();
+                long now = System.nanoTime();
+                logger.info(String.format("Preloading %s: %d of %d rows, %.0f rows/sec", tag, rows, cardinality,
+                        (rows - last) * 1e9 / Math.max(1, now - lastTime)));
+                last = rows;
+                lastTime = now;
+            }
+        }, period, period, TimeUnit.SECONDS);
+
+        final long partitionSize = (long) batchSize * commitInterval;
+        List<Future<?>> partitions = new ArrayList<>();
+        try {
+            for (long offset = 0; offset < cardinality; offset += partitionSize) {
+                final int rows = (int) Math.min(partitionSize, cardinality - offset);
+                partitions.add(loaders.submit(() -> {
+                    loadPartition(sql, plan, rows);
+                    loaded.addAndGet(rows);
+                    return null;
+                }));
+            }
+            for (Future<?> partition : partitions) {
+                partition.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Error("Interrupted while preloading " + tag + ".", e);
+        } catch (ExecutionException e) {
+            throw new Error("Failed to preload " + tag + ": " + Exceptions.toStringAllCauses(e.getCause()), e.getCause());
+        } finally {
+            progress.cancel(false);
+            for (Future<?> partition : partitions) {
+                partition.cancel(true);
+            }
+        }
+
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        logger.info(String.format("Preloaded %s: %d rows in %.1f sec, %.0f rows/sec", tag, loaded.get(), seconds,
+                loaded.get() / Math.max(seconds, 1e-9)));
+    }
+
+    private void loadPartition(String sql, BindingPlan plan, int rows) throws Exception {
+        SqlRetryPolicy<Boolean> retryPolicy = retryPolicies.newPooledPolicy();
+        retryPolicy.action(connection -> {
+            final boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                int remaining = rows;
+                while (remaining > 0) {
+                    int records = Math.min(batchSize, remaining);
+                    for (int record = 0; record < records; record++) {
+                        plan.bind(statement);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    remaining -= records;
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException ignored) {
+                    // the original failure is the one reported
+                }
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return true;
+        });
+    }
+}
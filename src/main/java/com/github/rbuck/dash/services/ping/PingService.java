@@ -1,14 +1,10 @@
 package com.github.rbuck.dash.services.ping;
 
 import com.codahale.metrics.MetricRegistry;
-import com.codahale.metrics.Timer;
 import com.github.rbuck.dash.common.*;
 import com.github.rbuck.dash.services.AbstractService;
 import com.github.rbuck.dash.services.Context;
-import com.github.rbuck.retry.FixedInterval;
 import com.github.rbuck.retry.SqlRetryPolicy;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.sql.Connection;
@@ -18,24 +14,23 @@ import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Properties;
 
+import static com.github.rbuck.dash.common.PropertiesHelper.getBooleanProperty;
 import static java.lang.System.getProperties;
 
 public class PingService extends AbstractService {
 
-    private static Logger logger = LoggerFactory.getLogger(PingService.class);
-
     private final MetricRegistry metricRegistry = new MetricRegistry();
     private final MetricsService metricsService = new MetricsService(metricRegistry);
 
-    private SqlRetryPolicy<Boolean> retryPolicy;
-    private HashMap<String, Timer> meters;
+    private RetryPolicyFactory retryPolicies;
+    private HashMap<String, OutcomeMeters> meters;
 
     private Dialect dialect;
     private Mix mix;
 
     @Override
     protected Context createContext() {
-        return new PingContext();
+        return new PingContext(retryPolicies.newContextPolicy(), mix.newSampler());
     }
 
     @Override
@@ -56,23 +51,23 @@ public class PingService extends AbstractService {
             throw new IllegalArgumentException("Invalid dialect.");
         }
 
-        retryPolicy = new SqlRetryPolicy<>(
-                new FixedInterval(1, 100),
-                new DataSourceContext());
+        retryPolicies = new RetryPolicyFactory(new DataSourceContext(),
+                getBooleanProperty(properties, "dash.db.connection.pinned", false));
 
         // reporting services...
 
         mix = new Mix(properties);
         meters = new HashMap<>();
         for (Mix.Type type : mix) {
-            meters.put(type.getTag(), metricRegistry.timer(type.getTag()));
+            meters.put(type.getTag(), new OutcomeMeters(metricsService, type.getTag()));
         }
+        registerDriverMetrics(metricsService);
     }
 
     @Override
     public void start() throws Exception {
-        super.start();
         metricsService.start();
+        super.start();
     }
 
     @Override
@@ -85,6 +80,14 @@ public class PingService extends AbstractService {
         super.stop();
     }
 
+    @Override
+    public void destroy() {
+        super.destroy();
+        if (retryPolicies != null) {
+            retryPolicies.close();
+        }
+    }
+
     private void pingServer(PingContext ignore, Connection connection) throws SQLException {
         try (PreparedStatement query = connection.prepareStatement(dialect.getProperty("PING"))) {
             try (ResultSet pingResult = query.executeQuery()) {
@@ -98,12 +101,13 @@ public class PingService extends AbstractService {
     @Override
     protected void execute(Context context) {
         final PingService.PingContext pingContext = (PingService.PingContext) context;
-        Mix.Type type = mix.next();
-        Timer timer = meters.get(type.getTag());
-        try (Timer.Context ignore = timer.time()) {
+        Mix.Type type = pingContext.sampler.next();
+        OutcomeMeters outcomes = meters.get(type.getTag());
+        Exception failure = null;
+        try {
             switch (type.getTag()) {
                 case "PING": {
-                    retryPolicy.action(connection -> {
+                    pingContext.retryPolicy.action(connection -> {
                         pingServer(pingContext, connection);
                         return true;
                     });
@@ -114,21 +118,23 @@ public class PingService extends AbstractService {
                 }
             }
         } catch (Exception e) {
-            warn(e);
+            failure = e;
+        } finally {
+            recordOutcome(type, outcomes, failure);
         }
     }
 
-    private void warn(Exception re) {
-        // don't warn on shutdown!
-        if (!(re instanceof InterruptedException)) {
-            logger.warn(Exceptions.toStringAllCauses(re));
-        }
-    }
 
     // U T I L I T I E S
 
     class PingContext implements Context {
-        PingContext() {
+
+        final SqlRetryPolicy<Boolean> retryPolicy;
+        final Mix.Sampler sampler;
+
+        PingContext(SqlRetryPolicy<Boolean> retryPolicy, Mix.Sampler sampler) {
+            this.retryPolicy = retryPolicy;
+            this.sampler = sampler;
         }
     }
 
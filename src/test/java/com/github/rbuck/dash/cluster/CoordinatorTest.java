@@ -0,0 +1,57 @@
+package com.github.rbuck.dash.cluster;
+
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+public class CoordinatorTest {
+
+    @Test
+    public void testAgentSpecsDivideRateAndKeys() {
+        Properties spec = new Properties();
+        spec.setProperty("dash.driver.rates.limit", "1000");
+        spec.setProperty("dash.driver.rates.burst", "2000");
+        Coordinator coordinator = new Coordinator(spec, 3, 0);
+        long limit = 0;
+        for (int i = 0; i < 3; i++) {
+            Properties agentSpec = coordinator.getAgentSpec(i, 7);
+            limit += Long.parseLong(agentSpec.getProperty("dash.driver.rates.limit"));
+            assertEquals((7L + i) << 40, Long.parseLong(agentSpec.getProperty("dash.keys.origin")));
+            assertEquals(Boolean.toString(i > 0), agentSpec.getProperty("dash.db.skip.init"));
+            assertEquals(Integer.toString(i), agentSpec.getProperty("dash.cluster.agent.index"));
+        }
+        assertEquals(1000, limit);
+        assertEquals("334", coordinator.getAgentSpec(0, 7).getProperty("dash.driver.rates.limit"));
+        assertEquals("666", coordinator.getAgentSpec(2, 7).getProperty("dash.driver.rates.burst"));
+    }
+
+    @Test
+    public void testHistogramsSurviveEncoding() throws Exception {
+        Histogram histogram = new Histogram(3);
+        for (long value = 1; value <= 100000; value += 7) {
+            histogram.recordValue(value * 1000);
+        }
+        Map<String, Histogram> histograms = new TreeMap<>();
+        histograms.put("OLTP_C1", histogram);
+        histograms.put("OLTP_R1", new Histogram(3));
+
+        Map<String, Histogram> decoded = Channel.decodeHistograms(Channel.encode(histograms));
+        assertEquals(2, decoded.size());
+        assertEquals(histogram, decoded.get("OLTP_C1"));
+        assertEquals(histogram.getValueAtPercentile(99), decoded.get("OLTP_C1").getValueAtPercentile(99));
+        assertEquals(0, decoded.get("OLTP_R1").getTotalCount());
+    }
+
+    @Test
+    public void testPropertiesSurviveEncoding() throws Exception {
+        Properties spec = new Properties();
+        spec.setProperty("dash.workload.tag", "[OLTP_C1,OLTP_R1]");
+        spec.setProperty("dash.db.password", "p=a:s s");
+        assertEquals(spec, Channel.decodeProperties(Channel.encode(spec)));
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.rbuck.dash.common;
+
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CapacitySearchTest {
+
+    /**
+     * A system that sustains any rate up to its capacity with low latency,
+     * beyond which latency climbs steeply and throughput saturates.
+     */
+    private static Map<String, Histogram> simulate(double target, double capacity) {
+        double throughput = Math.min(target, capacity);
+        double utilization = throughput / capacity;
+        long latency = TimeUnit.MILLISECONDS.toNanos(1) + (long) (TimeUnit.MILLISECONDS.toNanos(1) * utilization / Math.max(0.01, 1 - utilization));
+        if (target > capacity) {
+            latency += TimeUnit.MILLISECONDS.toNanos(500);
+        }
+        Histogram histogram = new Histogram(3);
+        histogram.recordValueWithCount(latency, (long) throughput);
+        return Collections.singletonMap("OLTP_R1", histogram);
+    }
+
+    private static Properties properties(String mode) {
+        Properties properties = new Properties();
+        properties.setProperty("dash.search.mode", mode);
+        properties.setProperty("dash.search.slo.p99", "20");
+        return properties;
+    }
+
+    @Test
+    public void testStepSearch() {
+        CapacitySearch search = new CapacitySearch(properties("step"), 1000);
+        while (search.hasNext()) {
+            search.record(1.0, simulate(search.next(), 650));
+        }
+        // 100, 200, ... 600 pass, 700 saturates
+        assertEquals(7, search.getTrials().size());
+        assertEquals(600, search.getSustainable().getTarget(), 1e-9);
+        assertFalse(search.getTrials().get(6).isWithinSlo());
+        assertNotNull(search.getKnee());
+        assertTrue(search.getKnee().getThroughput() <= 650);
+    }
+
+    @Test
+    public void testBinarySearch() {
+        CapacitySearch search = new CapacitySearch(properties("binary"), 1000);
+        while (search.hasNext()) {
+            search.record(1.0, simulate(search.next(), 650));
+        }
+        assertEquals(1000, search.getTrials().get(0).getTarget(), 1e-9);
+        double sustainable = search.getSustainable().getTarget();
+        assertTrue(sustainable <= 650 && sustainable >= 650 - 0.05 * 1000);
+    }
+
+    @Test
+    public void testPerTagSlo() {
+        Properties properties = properties("step");
+        properties.setProperty("dash.search.slo.p99.OLTP_R1", "0.5");
+        CapacitySearch search = new CapacitySearch(properties, 1000);
+        search.record(1.0, simulate(search.next(), 650));
+        assertFalse(search.hasNext());
+        assertNull(search.getSustainable());
+    }
+
+    @Test
+    public void testFailuresAreNotThroughput() {
+        CapacitySearch search = new CapacitySearch(properties("step"), 1000);
+        // a database failing fast: few successes, many quick failures...
+        Histogram succeeded = new Histogram(3);
+        succeeded.recordValueWithCount(TimeUnit.MILLISECONDS.toNanos(1), 10);
+        Histogram failed = new Histogram(3);
+        failed.recordValueWithCount(TimeUnit.MICROSECONDS.toNanos(50), 90);
+        Map<String, Histogram> latencies = new TreeMap<>();
+        latencies.put("OLTP_R1", succeeded);
+        latencies.put("OLTP_R1.failed", failed);
+
+        CapacitySearch.Trial trial = search.record(1.0, latencies);
+        assertEquals(10, trial.getThroughput(), 1e-9);
+        assertEquals(90, trial.getFailures());
+        assertEquals(Collections.singleton("OLTP_R1"), trial.getLatencies().keySet());
+        assertFalse(trial.isWithinSlo());
+
+        // and failures alone fail a trial that otherwise meets its target...
+        search = new CapacitySearch(properties("step"), 1000);
+        succeeded = new Histogram(3);
+        succeeded.recordValueWithCount(TimeUnit.MILLISECONDS.toNanos(1), 100);
+        failed = new Histogram(3);
+        failed.recordValue(TimeUnit.MILLISECONDS.toNanos(1));
+        latencies.put("OLTP_R1", succeeded);
+        latencies.put("OLTP_R1.failed", failed);
+        assertFalse(search.record(1.0, latencies).isWithinSlo());
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        assertFalse(new CapacitySearch(new Properties(), 1000).hasNext());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSloRequired() {
+        Properties properties = new Properties();
+        properties.setProperty("dash.search.mode", "step");
+        new CapacitySearch(properties, 1000);
+    }
+}
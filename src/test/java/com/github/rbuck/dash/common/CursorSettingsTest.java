@@ -0,0 +1,62 @@
+package com.github.rbuck.dash.common;
+
+import com.github.rbuck.dash.services.cloud.CloudService;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CursorSettingsTest {
+
+    @Test
+    public void testDialectDefaultsAndOverrides() throws Exception {
+        Dialect nuodb = new Dialect(CloudService.class, "nuodb");
+        Properties properties = new Properties();
+        CursorSettings settings = CursorSettings.forTag(properties, nuodb, "OLAP_R3");
+        assertEquals(CursorSettings.Mode.DEFAULT, settings.getMode());
+        assertEquals(1000, settings.getFetchSize());
+
+        properties.setProperty("dash.db.cursor.fetch.size", "500");
+        properties.setProperty("dash.db.cursor.mode.OLAP_R3", "cursor");
+        settings = CursorSettings.forTag(properties, nuodb, "OLAP_R3");
+        assertEquals(CursorSettings.Mode.CURSOR, settings.getMode());
+        assertEquals(500, settings.getFetchSize());
+        settings = CursorSettings.forTag(properties, nuodb, "OLTP_R3");
+        assertEquals(CursorSettings.Mode.DEFAULT, settings.getMode());
+
+        Dialect mysql = new Dialect(CloudService.class, "mysql");
+        assertEquals(CursorSettings.Mode.STREAMING, CursorSettings.forTag(new Properties(), mysql, "OLTP_R3").getMode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownMode() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("dash.db.cursor.mode", "scrollable");
+        CursorSettings.forTag(properties, new Dialect(CloudService.class, "nuodb"), "OLAP_R3");
+    }
+
+    @Test
+    public void testCursorModeHoldsATransaction() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:hsqldb:mem:cursors", "SA", "")) {
+            CursorSettings settings = new CursorSettings(CursorSettings.Mode.CURSOR, 100);
+            try (CursorSettings.Scope scope = settings.begin(connection);
+                 PreparedStatement statement = connection.prepareStatement("VALUES (1)")) {
+                settings.apply(statement);
+                assertEquals(100, statement.getFetchSize());
+                assertFalse(connection.getAutoCommit());
+            }
+            assertTrue(connection.getAutoCommit());
+
+            settings = new CursorSettings(CursorSettings.Mode.DEFAULT, 0);
+            try (CursorSettings.Scope scope = settings.begin(connection)) {
+                assertTrue(connection.getAutoCommit());
+            }
+        }
+    }
+}
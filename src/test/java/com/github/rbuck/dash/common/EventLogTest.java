@@ -0,0 +1,82 @@
+package com.github.rbuck.dash.common;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EventLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testEventsRoundTrip() throws IOException {
+        File dir = folder.newFolder("events");
+        EventLog log = new EventLog(dir, 4, 0);
+        EventLog.Writer writer = log.newWriter();
+        long origin = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            writer.append(origin + i * 1000, origin + i * 1000 + 7, 500 + i, 3, i % 2,
+                    i == 9 ? EventLog.Outcome.FAILURE : EventLog.Outcome.SUCCESS, i == 9 ? 300 : 0);
+        }
+        log.nameTag(0, "OLTP_C1");
+        log.nameTag(1, "OLTP_R1");
+        log.close();
+
+        EventLogReader reader = new EventLogReader(dir);
+        assertEquals(3, reader.getSegments().length);
+        List<Long> latencies = new ArrayList<>();
+        reader.forEach(event -> {
+            assertEquals(7, event.getActualStart() - event.getIntendedStart());
+            assertEquals(3, event.getWorker());
+            latencies.add(event.getLatency());
+            if (event.getLatency() == 509) {
+                assertEquals(EventLog.Outcome.FAILURE, event.getOutcome());
+                assertEquals(Byte.MAX_VALUE, event.getRetries());
+            }
+        });
+        assertEquals(10, latencies.size());
+        assertEquals(500L, (long) latencies.get(0));
+        assertEquals(509L, (long) latencies.get(9));
+
+        StringWriter csv = new StringWriter();
+        reader.writeCsv(csv);
+        String[] lines = csv.toString().split("\n");
+        assertEquals(11, lines.length);
+        assertEquals(EventLogReader.CSV_HEADER, lines[0]);
+        assertTrue(lines[1], lines[1].endsWith(",500,7,OLTP_C1,3,SUCCESS,0"));
+        assertTrue(lines[10], lines[10].endsWith(",509,7,OLTP_R1,3,FAILURE,127"));
+    }
+
+    @Test
+    public void testRetainedSegmentsFormRing() throws IOException {
+        File dir = folder.newFolder("ring");
+        EventLog log = new EventLog(dir, 4, 2);
+        EventLog.Writer writer = log.newWriter();
+        for (int i = 0; i < 18; i++) {
+            writer.append(i, i, i, 0, 0, EventLog.Outcome.SUCCESS, 0);
+        }
+        log.close();
+
+        EventLogReader reader = new EventLogReader(dir);
+        assertEquals(2, reader.getSegments().length);
+        List<Long> latencies = new ArrayList<>();
+        reader.forEach(event -> latencies.add(event.getLatency()));
+        // the last full segment and the partial one
+        assertEquals(6, latencies.size());
+        assertEquals(12L, (long) latencies.get(0));
+        assertEquals(17L, (long) latencies.get(5));
+
+        // a new log replaces the segments of the prior one
+        new EventLog(dir, 4, 0).close();
+        assertEquals(0, new EventLogReader(dir).getSegments().length);
+    }
+}
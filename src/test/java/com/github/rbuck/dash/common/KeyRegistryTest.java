@@ -0,0 +1,76 @@
+package com.github.rbuck.dash.common;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KeyRegistryTest {
+
+    @Test
+    public void testEmptyRegistrySamplesNothing() {
+        assertEquals(-1, KeyRegistry.create().sample());
+    }
+
+    @Test
+    public void testSamplesOnlyAddedKeys() {
+        KeyRegistry registry = KeyRegistry.create();
+        for (long key = 0; key < 10; key++) {
+            registry.add(key * 3);
+        }
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            long key = registry.sample();
+            assertEquals(0, key % 3);
+            assertTrue(key >= 0 && key < 30);
+            seen.add(key);
+        }
+        assertEquals(10, seen.size());
+    }
+
+    @Test
+    public void testConcurrentAppends() throws InterruptedException {
+        final KeyRegistry registry = KeyRegistry.create();
+        final int perThread = 700000; // spans segments
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long base = (long) t * perThread;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    registry.add(base + i);
+                    registry.sample();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(threads.length * perThread, registry.size());
+        for (int i = 0; i < 1000; i++) {
+            long key = registry.sample();
+            assertTrue(key >= 0 && key < threads.length * perThread);
+        }
+    }
+
+    @Test
+    public void testMappedKeysPersist() throws IOException {
+        File file = File.createTempFile("dash", ".keys");
+        file.deleteOnExit();
+        try (KeyRegistry registry = KeyRegistry.open(file)) {
+            registry.clear();
+            registry.add(42);
+        }
+        try (KeyRegistry registry = KeyRegistry.open(file)) {
+            assertEquals(1, registry.size());
+            assertEquals(42, registry.sample());
+            registry.clear();
+            assertEquals(0, registry.size());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.rbuck.dash.common;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LimitersTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testPoissonMeanGap() {
+        PoissonLimiter limiter = new PoissonLimiter(1000);
+        int draws = 100000;
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (int i = 0; i < draws; i++) {
+            long gap = limiter.gap(0);
+            sum += gap;
+            sumOfSquares += (double) gap * gap;
+        }
+        double mean = sum / draws;
+        double deviation = Math.sqrt(sumOfSquares / draws - mean * mean);
+        assertEquals(SECOND / 1000.0, mean, SECOND / 1000.0 * 0.02);
+        // exponential gaps deviate as much as their mean
+        assertEquals(mean, deviation, mean * 0.05);
+    }
+
+    @Test
+    public void testSpikeRates() {
+        SpikeLimiter limiter = new SpikeLimiter(100, 1000, 60 * SECOND, 5 * SECOND, 0);
+        assertEquals(100, limiter.getRate(0), 0);
+        assertEquals(100, limiter.getRate(59 * SECOND), 0);
+        assertEquals(1000, limiter.getRate(60 * SECOND), 0);
+        assertEquals(1000, limiter.getRate(64 * SECOND), 0);
+        assertEquals(100, limiter.getRate(65 * SECOND), 0);
+        assertEquals(1000, limiter.getRate(121 * SECOND), 0);
+        assertEquals(SECOND / 1000, limiter.gap(61 * SECOND));
+    }
+
+    @Test
+    public void testSpikeDecay() {
+        SpikeLimiter limiter = new SpikeLimiter(100, 1000, 60 * SECOND, 5 * SECOND, 10 * SECOND);
+        assertEquals(1000, limiter.getRate(65 * SECOND), 1e-9);
+        assertEquals(100 + 900 / Math.E, limiter.getRate(75 * SECOND), 1e-9);
+        assertEquals(100 + 900 * Math.exp(-5.4), limiter.getRate(119 * SECOND), 1e-9);
+        assertTrue(limiter.getRate(70 * SECOND) > limiter.getRate(80 * SECOND));
+    }
+
+    @Test
+    public void testScheduledLimiterPaces() {
+        ScheduledLimiter limiter = new ScheduledLimiter() {
+            @Override
+            protected long gap(long elapsed) {
+                return SECOND / 1000;
+            }
+        };
+        limiter.consume(1);
+        long begin = System.nanoTime();
+        limiter.consume(100);
+        long elapsed = System.nanoTime() - begin;
+        assertTrue("elapsed " + elapsed, elapsed >= 95 * SECOND / 1000);
+    }
+}
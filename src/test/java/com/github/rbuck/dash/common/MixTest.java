@@ -0,0 +1,77 @@
+package com.github.rbuck.dash.common;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MixTest {
+
+    private static Properties mix(String sampler, String seed) {
+        Properties properties = new Properties();
+        properties.setProperty("dash.workload.tag", "[A,B,C,D]");
+        properties.setProperty("dash.workload.mix", "[10,0,30,60]");
+        properties.setProperty("dash.workload.sampler", sampler);
+        if (seed != null) {
+            properties.setProperty("dash.workload.seed", seed);
+        }
+        return properties;
+    }
+
+    @Test
+    public void testRandomMatchesRatios() {
+        Mix.Sampler sampler = new Mix(mix("random", "42")).newSampler();
+        int[] counts = new int[4];
+        int draws = 1000000;
+        for (int i = 0; i < draws; i++) {
+            counts[sampler.next().getOrdinal()]++;
+        }
+        assertEquals(0.10, counts[0] / (double) draws, 0.005);
+        assertEquals(0, counts[1]);
+        assertEquals(0.30, counts[2] / (double) draws, 0.005);
+        assertEquals(0.60, counts[3] / (double) draws, 0.005);
+    }
+
+    @Test
+    public void testSeededSamplersAreReproducible() {
+        Mix first = new Mix(mix("random", "7"));
+        Mix second = new Mix(mix("random", "7"));
+        for (int stream = 0; stream < 3; stream++) {
+            Mix.Sampler a = first.newSampler();
+            Mix.Sampler b = second.newSampler();
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(a.next().getTag(), b.next().getTag());
+            }
+        }
+    }
+
+    @Test
+    public void testRoundRobinIsExactPerWindow() {
+        Mix.Sampler sampler = new Mix(mix("round-robin", null)).newSampler();
+        for (int window = 0; window < 10; window++) {
+            int[] counts = new int[4];
+            for (int i = 0; i < 100; i++) {
+                counts[sampler.next().getOrdinal()]++;
+            }
+            assertEquals(10, counts[0]);
+            assertEquals(0, counts[1]);
+            assertEquals(30, counts[2]);
+            assertEquals(60, counts[3]);
+        }
+    }
+
+    @Test
+    public void testRoundRobinInterleaves() {
+        Mix.Sampler sampler = new Mix(mix("round-robin", null)).newSampler();
+        int run = 0;
+        String previous = null;
+        for (int i = 0; i < 100; i++) {
+            String tag = sampler.next().getTag();
+            run = tag.equals(previous) ? run + 1 : 1;
+            previous = tag;
+            assertTrue("run of " + tag + " too long", run <= 2);
+        }
+    }
+}
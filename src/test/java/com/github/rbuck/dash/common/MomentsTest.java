@@ -0,0 +1,52 @@
+package com.github.rbuck.dash.common;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MomentsTest {
+
+    @Test
+    public void testMeanAndVariance() {
+        Moments moments = new Moments();
+        for (double value : new double[]{2, 4, 4, 4, 5, 5, 7, 9}) {
+            moments.add(value);
+        }
+        assertEquals(8, moments.getCount());
+        assertEquals(40, moments.getSum(), 0);
+        assertEquals(5, moments.getMean(), 0);
+        assertEquals(4, moments.getVariance(), 1e-12);
+        assertTrue(Double.isNaN(new Moments().getMean()));
+    }
+
+    @Test
+    public void testMergedPartitionsMatchTheWhole() {
+        Random random = new Random(42);
+        Moments whole = new Moments();
+        Moments merged = new Moments();
+        Moments pushedDown = new Moments();
+        for (int partition = 0; partition < 16; partition++) {
+            Moments part = new Moments();
+            double sumOfSquares = 0;
+            int count = partition == 3 ? 0 : random.nextInt(1000);
+            for (int i = 0; i < count; i++) {
+                long value = random.nextInt(Integer.MAX_VALUE);
+                whole.add(value);
+                part.add(value);
+                sumOfSquares += (double) value * value;
+            }
+            merged.merge(part);
+            pushedDown.merge(Moments.of(part.getCount(), part.getSum(), sumOfSquares));
+        }
+        assertEquals(whole.getCount(), merged.getCount());
+        assertEquals(whole.getSum(), merged.getSum(), 0);
+        assertEquals(whole.getMean(), merged.getMean(), whole.getMean() * 1e-12);
+        assertEquals(whole.getVariance(), merged.getVariance(), whole.getVariance() * 1e-9);
+        assertEquals(whole.getCount(), pushedDown.getCount());
+        assertEquals(whole.getMean(), pushedDown.getMean(), whole.getMean() * 1e-12);
+        assertEquals(whole.getVariance(), pushedDown.getVariance(), whole.getVariance() * 1e-6);
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.rbuck.dash.common;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class OutcomeMetersTest {
+
+    @Test
+    public void testFailureCodes() {
+        assertEquals("40001.1213", OutcomeMeters.getFailureCode(
+                new RuntimeException("wrapped", new SQLTransactionRollbackException("deadlock", "40001", 1213))));
+        assertEquals("unknown.0", OutcomeMeters.getFailureCode(new SQLException("no state")));
+        assertEquals("IllegalStateException", OutcomeMeters.getFailureCode(new IllegalStateException()));
+    }
+
+    @Test
+    public void testOutcomesAreMeteredApart() {
+        MetricRegistry registry = new MetricRegistry();
+        OutcomeMeters meters = new OutcomeMeters(new MetricsService(registry), "OLTP_C1");
+        meters.success(TimeUnit.MILLISECONDS.toNanos(1), 0);
+        meters.success(TimeUnit.MILLISECONDS.toNanos(2), 2);
+        meters.failure(TimeUnit.SECONDS.toNanos(30), 1, new SQLException("timeout", "HYT00", 0));
+        meters.failure(TimeUnit.SECONDS.toNanos(30), 0, new SQLException("timeout", "HYT00", 0));
+
+        assertEquals(2, registry.timer("OLTP_C1").getCount());
+        assertEquals(2, registry.timer("OLTP_C1.failed").getCount());
+        assertEquals(2, registry.meter("OLTP_C1.successes").getCount());
+        assertEquals(3, registry.meter("OLTP_C1.retries").getCount());
+        assertEquals(2, registry.meter("OLTP_C1.failures").getCount());
+        assertEquals(2, registry.meter("OLTP_C1.failures.HYT00.0").getCount());
+    }
+
+    @Test
+    public void testRetriesAreCountedPerThread() throws Exception {
+        CountingTransactionContext context = new CountingTransactionContext(() -> null);
+        CountingTransactionContext.reset();
+        assertEquals(0, CountingTransactionContext.getRetries());
+        context.getConnection();
+        assertEquals(0, CountingTransactionContext.getRetries());
+        context.getConnection();
+        context.getConnection();
+        assertEquals(2, CountingTransactionContext.getRetries());
+
+        Thread other = new Thread(() -> {
+            CountingTransactionContext.reset();
+            assertEquals(0, CountingTransactionContext.getRetries());
+        });
+        other.start();
+        other.join();
+        assertEquals(2, CountingTransactionContext.getRetries());
+        CountingTransactionContext.reset();
+        assertEquals(0, CountingTransactionContext.getRetries());
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.rbuck.dash.common;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.rbuck.dash.common.PhaseSchedule.Phase.*;
+import static org.junit.Assert.assertEquals;
+
+public class PhaseScheduleTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testDefaultIsSteadyStateOnly() {
+        Properties properties = new Properties();
+        properties.setProperty("dash.driver.duration", "60");
+        PhaseSchedule schedule = new PhaseSchedule(properties);
+        assertEquals(Collections.singletonList(STEADY), schedule.getPhases());
+        assertEquals(60, schedule.getDuration(STEADY));
+        assertEquals(1.0, schedule.getLoad(STEADY, 0), 0);
+    }
+
+    @Test
+    public void testLoadByPhase() {
+        Properties properties = new Properties();
+        properties.setProperty("dash.driver.phases.warmup", "30");
+        properties.setProperty("dash.driver.phases.rampup", "10");
+        properties.setProperty("dash.driver.phases.cooldown", "10");
+        properties.setProperty("dash.driver.phases.ramp.from", "0.2");
+        PhaseSchedule schedule = new PhaseSchedule(properties);
+        assertEquals(Arrays.asList(WARMUP, RAMPUP, STEADY, COOLDOWN), schedule.getPhases());
+        assertEquals(0.2, schedule.getLoad(WARMUP, 25 * SECOND), 1e-9);
+        assertEquals(0.2, schedule.getLoad(RAMPUP, 0), 1e-9);
+        assertEquals(0.6, schedule.getLoad(RAMPUP, 5 * SECOND), 1e-9);
+        assertEquals(1.0, schedule.getLoad(RAMPUP, 15 * SECOND), 1e-9);
+        assertEquals(1.0, schedule.getLoad(STEADY, 15 * SECOND), 1e-9);
+        assertEquals(0.6, schedule.getLoad(COOLDOWN, 5 * SECOND), 1e-9);
+        assertEquals(0.2, schedule.getLoad(COOLDOWN, 10 * SECOND), 1e-9);
+    }
+
+    @Test
+    public void testWarmupWithoutRampIsFullLoad() {
+        Properties properties = new Properties();
+        properties.setProperty("dash.driver.phases.warmup", "30");
+        PhaseSchedule schedule = new PhaseSchedule(properties);
+        assertEquals(1.0, schedule.getLoad(WARMUP, 0), 0);
+        assertEquals(PhaseSchedule.Ramp.RATE, schedule.getRamp());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRamp() {
+        Properties properties = new Properties();
+        properties.setProperty("dash.driver.phases.ramp", "linear");
+        new PhaseSchedule(properties);
+    }
+}
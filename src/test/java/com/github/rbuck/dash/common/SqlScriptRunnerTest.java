@@ -0,0 +1,86 @@
+package com.github.rbuck.dash.common;
+
+import com.github.rbuck.dash.services.cloud.CloudService;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SqlScriptRunnerTest {
+
+    @Test
+    public void testIndependentTablesRunTogether() {
+        List<SqlScriptRunner.Step> steps = SqlScriptRunner.plan(Arrays.asList(
+                "-- the schema\nCREATE SCHEMA cloud",
+                "USE cloud",
+                "CREATE TABLE account (id BIGINT)",
+                "CREATE TABLE container (id BIGINT, account_id BIGINT)",
+                "CREATE INDEX idx_account_id ON account (id)",
+                "CREATE INDEX idx_container_account_id ON container (account_id)",
+                "DROP INDEX idx_account_id",
+                "CREATE TRIGGER trg_container FOR container AFTER INSERT AS UPDATE account SET id = id END_TRIGGER",
+                "DROP INDEX idx_unknown"));
+
+        assertTrue(steps.get(0).barrier);
+        assertTrue(steps.get(1).barrier);
+        assertEquals(Arrays.asList("USE cloud"), steps.get(2).session);
+
+        // tables after the session statement, then their indexes, together
+        assertEquals(3, steps.get(2).phase);
+        assertEquals(3, steps.get(3).phase);
+        assertEquals(4, steps.get(4).phase);
+        assertEquals(4, steps.get(5).phase);
+        assertEquals(Arrays.asList(steps.get(2)), steps.get(4).dependencies);
+
+        // an index stands for its table, as does a trigger for the tables it touches
+        assertEquals(Arrays.asList(steps.get(4)), steps.get(6).dependencies);
+        assertEquals(6, steps.get(7).phase);
+        assertTrue(steps.get(7).dependencies.containsAll(Arrays.asList(steps.get(5), steps.get(6))));
+
+        // an unknown object waits on all
+        assertTrue(steps.get(8).barrier);
+        assertEquals(7, steps.get(8).phase);
+    }
+
+    @Test
+    public void testPlanningForgetsFlushedStatements() {
+        SqlScriptRunner.Planner planner = new SqlScriptRunner.Planner();
+        planner.plan("USE cloud");
+        SqlScriptRunner.Step dropChild = planner.plan("DROP TABLE IF EXISTS child");
+        SqlScriptRunner.Step dropParent = planner.plan("DROP TABLE IF EXISTS parent");
+        // the referring table is declared after it is dropped, so drops keep script order
+        assertEquals(Arrays.asList(dropChild), dropParent.dependencies);
+        SqlScriptRunner.Step createParent = planner.plan("CREATE TABLE parent (id BIGINT PRIMARY KEY)");
+        planner.plan("CREATE TABLE child (id BIGINT, parent_id BIGINT REFERENCES parent (id))");
+        assertEquals(Arrays.asList(dropParent), createParent.dependencies);
+
+        planner.flush();
+        SqlScriptRunner.Step insert = planner.plan("INSERT INTO parent VALUES (1)");
+        assertTrue(insert.dependencies.isEmpty());
+        assertFalse(insert.barrier);
+        assertEquals(6, insert.phase);
+        assertEquals(Arrays.asList("USE cloud"), insert.session);
+        assertEquals(6, planner.getCount());
+    }
+
+    @Test
+    public void testInstallScriptsPlan() throws IOException {
+        String[] sqlFiles = {"mysql-dialect-install.sql", "nuodb-dialect-install.sql"};
+        for (String sqlFile : sqlFiles) {
+            String script = Resources.loadResource(CloudService.class, sqlFile, new StringBuilder()).toString();
+            List<SqlScriptRunner.Step> steps = SqlScriptRunner.plan(new SqlScriptSplitter().splitStatements(script));
+            int phases = 0;
+            for (SqlScriptRunner.Step step : steps) {
+                for (SqlScriptRunner.Step dependency : step.dependencies) {
+                    assertTrue(dependency.index < step.index);
+                    assertTrue(dependency.phase < step.phase);
+                }
+                phases = Math.max(phases, step.phase);
+            }
+            assertTrue(sqlFile + " phases " + phases, phases < steps.size());
+        }
+    }
+}
@@ -4,8 +4,14 @@ import com.github.rbuck.dash.services.cloud.CloudService;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+
 public class SqlScriptTest {
     @Test
     public void testIt() {
@@ -21,4 +27,69 @@ public class SqlScriptTest {
             }
         }
     }
+
+    @Test
+    public void testStreamingMatchesList() throws IOException {
+        String[] sqlFiles = {"mysql-dialect-install.sql", "nuodb-dialect-install.sql"};
+        for (String sqlFile : sqlFiles) {
+            String script = Resources.loadResource(CloudService.class, sqlFile, new StringBuilder()).toString();
+            SqlScriptSplitter splitter = new SqlScriptSplitter();
+            List<String> streamed = new ArrayList<>();
+            try (Reader reader = Resources.openResource(CloudService.class, sqlFile)) {
+                splitter.splitStatements(reader, streamed::add);
+            }
+            assertEquals(splitter.splitStatements(script), streamed);
+        }
+    }
+
+    @Test
+    public void testDelimitersAndComments() {
+        String script = "-- comment\r\n" +
+                "CREATE TABLE t (a VARCHAR(8) DEFAULT ';'); /* block; comment */\n" +
+                "DELIMITER |\n" +
+                "CREATE TRIGGER x BEFORE INSERT ON t FOR EACH ROW BEGIN SET NEW.a = 'b'; END|\n" +
+                "DELIMITER ;\n" +
+                "SELECT \"a;b\" FROM t";
+        assertEquals(Arrays.asList(
+                "-- comment\nCREATE TABLE t (a VARCHAR(8) DEFAULT ';')",
+                "CREATE TRIGGER x BEFORE INSERT ON t FOR EACH ROW BEGIN SET NEW.a = 'b'; END",
+                "SELECT \"a;b\" FROM t"),
+                new SqlScriptSplitter().splitStatements(script));
+    }
+
+    @Test
+    public void testLargeScriptIsStreamed() throws IOException {
+        final int count = 200000;
+        final String statement = "INSERT INTO t VALUES (1, 'x');\n";
+        // a script generated on the fly, never held in memory as a whole
+        Reader script = new Reader() {
+            private int remaining = count * statement.length();
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                if (remaining == 0) {
+                    return -1;
+                }
+                int n = Math.min(length, remaining);
+                for (int i = 0; i < n; i++) {
+                    int position = count * statement.length() - remaining + i;
+                    buffer[offset + i] = statement.charAt(position % statement.length());
+                }
+                remaining -= n;
+                return n;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final int[] seen = new int[1];
+        new SqlScriptSplitter().splitStatements(script, sql -> {
+            assertEquals("INSERT INTO t VALUES (1, 'x')", sql.trim());
+            seen[0]++;
+        });
+        assertEquals(count, seen[0]);
+        new SqlScriptSplitter().splitStatements(new StringReader(""), sql -> seen[0]++);
+        assertEquals(count, seen[0]);
+    }
 }
@@ -0,0 +1,44 @@
+package com.github.rbuck.dash.common;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+
+public class StripedLimiterTest {
+
+    @Test
+    public void testHoldsRateAcrossUnevenWorkers() throws InterruptedException {
+        final double rate = 20000;
+        final StripedLimiter limiter = new StripedLimiter(rate, 8, 100);
+        final AtomicLong issued = new AtomicLong();
+        final long duration = TimeUnit.MILLISECONDS.toNanos(1500);
+        final long begin = System.nanoTime();
+        final CountDownLatch done = new CountDownLatch(8);
+        try {
+            for (int t = 0; t < 8; t++) {
+                // half of the workers can only manage a tenth of their fair share
+                final long work = t % 2 == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / 250;
+                new Thread(() -> {
+                    while (System.nanoTime() - begin < duration) {
+                        limiter.consume(1);
+                        issued.incrementAndGet();
+                        if (work > 0) {
+                            LockSupport.parkNanos(work);
+                        }
+                    }
+                    done.countDown();
+                }).start();
+            }
+            done.await();
+        } finally {
+            limiter.close();
+        }
+        double achieved = issued.get() / ((System.nanoTime() - begin) / 1e9);
+        assertEquals(rate, achieved, rate * 0.05);
+    }
+}
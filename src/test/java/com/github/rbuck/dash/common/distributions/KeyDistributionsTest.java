@@ -0,0 +1,112 @@
+package com.github.rbuck.dash.common.distributions;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KeyDistributionsTest {
+
+    private static final int DRAWS = 200000;
+
+    private static long[] histogram(KeyDistribution distribution, int count) {
+        long[] counts = new long[count];
+        for (int i = 0; i < DRAWS; i++) {
+            long index = distribution.next(count);
+            assertTrue("index " + index + " out of range", index >= 0 && index < count);
+            counts[(int) index]++;
+        }
+        return counts;
+    }
+
+    @Test
+    public void testZipfianFavorsOldest() {
+        long[] counts = histogram(new ZipfianDistribution(0.99), 1000);
+        assertTrue(counts[0] > counts[1]);
+        assertTrue(counts[1] > counts[10]);
+        assertTrue(counts[0] > 10 * counts[100]);
+    }
+
+    @Test
+    public void testZipfianWithShrinkingAndGrowingCounts() {
+        ZipfianDistribution distribution = new ZipfianDistribution(0.99);
+        long[] counts = new long[4000];
+        for (int i = 0; i < DRAWS; i++) {
+            // as when workers read the key count just before others add keys...
+            int count = 1000 + (i % 2 == 0 ? i / 100 : i / 100 - 500);
+            long index = distribution.next(count);
+            assertTrue("index " + index + " out of range for " + count, index >= 0 && index < count);
+            counts[(int) index]++;
+        }
+        assertTrue(counts[0] > counts[1]);
+        assertTrue(counts[1] > counts[10]);
+        assertTrue(counts[0] > 10 * counts[100]);
+    }
+
+    @Test
+    public void testLatestFavorsNewest() {
+        long[] counts = histogram(new LatestDistribution(0.99), 1000);
+        assertTrue(counts[999] > counts[998]);
+        assertTrue(counts[999] > 10 * counts[899]);
+    }
+
+    @Test
+    public void testScrambledZipfianIsSkewedButScattered() {
+        long[] counts = histogram(new ScrambledZipfianDistribution(0.99), 1000);
+        int hottest = 0;
+        for (int i = 1; i < counts.length; i++) {
+            hottest = counts[i] > counts[hottest] ? i : hottest;
+        }
+        assertTrue(hottest != 0);
+        assertTrue(counts[hottest] > DRAWS / 20);
+    }
+
+    @Test
+    public void testHotspotFractions() {
+        long[] counts = histogram(new HotspotDistribution(0.2, 0.8), 1000);
+        long hot = 0;
+        for (int i = 0; i < 200; i++) {
+            hot += counts[i];
+        }
+        assertEquals(0.8, hot / (double) DRAWS, 0.01);
+    }
+
+    @Test
+    public void testExponentialPercentile() {
+        long[] counts = histogram(new ExponentialDistribution(95, 0.1), 1000);
+        long low = 0;
+        for (int i = 0; i < 100; i++) {
+            low += counts[i];
+        }
+        assertTrue(low / (double) DRAWS > 0.94);
+    }
+
+    @Test
+    public void testGrowingKeyCount() {
+        ZipfianDistribution distribution = new ZipfianDistribution(0.99);
+        for (int count = 1; count < 5000; count++) {
+            long index = distribution.next(count);
+            assertTrue(index >= 0 && index < count);
+        }
+        assertTrue(distribution.next(10) < 10);
+    }
+
+    @Test
+    public void testPerTagOverride() {
+        Properties properties = new Properties();
+        properties.setProperty("dash.workload.distribution", "zipfian");
+        properties.setProperty("dash.workload.distribution.OLTP_R2", "latest");
+        assertTrue(KeyDistributions.forTag(properties, "OLTP_C1") instanceof ZipfianDistribution);
+        assertTrue(KeyDistributions.forTag(properties, "OLTP_R2") instanceof LatestDistribution);
+        assertTrue(KeyDistributions.forTag(new Properties(), "OLTP_C1") instanceof UniformDistribution);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownDistribution() {
+        Properties properties = new Properties();
+        properties.setProperty("dash.workload.distribution", "gaussian");
+        KeyDistributions.forTag(properties, "OLTP_C1");
+    }
+}
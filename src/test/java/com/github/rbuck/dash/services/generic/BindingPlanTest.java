@@ -0,0 +1,89 @@
+package com.github.rbuck.dash.services.generic;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BindingPlanTest {
+
+    @Test
+    public void testLiteralsAreBoundAsIs() {
+        BindingPlan plan = BindingPlan.compile("{{42}} {{ACME}}");
+        assertEquals(2, plan.size());
+        assertEquals("42", plan.value(0));
+        assertEquals("ACME", plan.value(1));
+    }
+
+    @Test
+    public void testMissingTemplateIsEmpty() {
+        assertEquals(0, BindingPlan.compile(null).size());
+    }
+
+    @Test
+    public void testInvocationsAreResolved() {
+        BindingPlan.Binding binding = BindingPlan.parse("sqldate.date('2000/01/01', \"2020/12,31\", yyyy)");
+        assertTrue(binding instanceof BindingPlan.Invocation);
+        BindingPlan.Invocation invocation = (BindingPlan.Invocation) binding;
+        assertEquals("sqldate.date", invocation.getName());
+        assertArrayEquals(new String[]{"2000/01/01", "2020/12,31", "yyyy"}, values(invocation.getArguments()));
+    }
+
+    @Test
+    public void testNestedInvocations() {
+        BindingPlan.Invocation invocation = (BindingPlan.Invocation) BindingPlan.parse("zipfian(random('a','b'), 'c')");
+        assertEquals("zipfian", invocation.getName());
+        assertEquals(2, invocation.getArguments().length);
+        BindingPlan.Invocation nested = (BindingPlan.Invocation) invocation.getArguments()[0];
+        assertEquals("random", nested.getName());
+        assertArrayEquals(new String[]{"a", "b"}, values(nested.getArguments()));
+        assertEquals(0, ((BindingPlan.Invocation) BindingPlan.parse("uuid()")).getArguments().length);
+    }
+
+    @Test
+    public void testInvocationsAreEvaluated() {
+        BindingPlan plan = BindingPlan.compile("{{zipfian(10)}}{{sqldate.date('2000/01/01','2000/01/01')}}{{random('a')}}");
+        for (int i = 0; i < 100; i++) {
+            long value = Long.parseLong(plan.value(0));
+            assertTrue(value >= 0 && value < 10);
+        }
+        assertEquals("2000/01/01", plan.value(1));
+        assertEquals("a", plan.value(2));
+    }
+
+    @Test
+    public void testUnknownFunctionsAreRejected() {
+        try {
+            BindingPlan.compile("QUERY1.parameters", "{{42}}{{zipfain(10)}}");
+            fail("unknown function compiled");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("The QUERY1.parameters expression (zipfain(10))"));
+            assertTrue(e.getMessage(), e.getMessage().contains("zipfain"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongArgumentCountIsRejected() {
+        BindingPlan.compile("{{zipfian(10, 0.99, 1)}}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnterminatedInvocation() {
+        BindingPlan.parse("random('a','b'");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnterminatedString() {
+        BindingPlan.parse("random('a)");
+    }
+
+    private static String[] values(BindingPlan.Binding[] bindings) {
+        String[] values = new String[bindings.length];
+        for (int i = 0; i < bindings.length; i++) {
+            values[i] = bindings[i].value();
+        }
+        return values;
+    }
+}